@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import processing.CAPM;
+import processing.DataProcess;
+import stockdata.Data;
+import stockdata.EpochDay;
+import stockdata.RiskFreeRates;
+
+/**
+ * CAPM scoring of a single event: beta over a year, the expected return of a day and the linear regression process.
+ * calculateCAR reads data/RFIrate.csv, so run the benchmarks from the root of the project.
+ * @author Aeilko Bos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CAPMBenchmark {
+	private Data compData;
+	private Data marketData;
+	private Date attackDate;
+	private BigDecimal beta;
+	private BigDecimal erm;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException{
+		LocalDate attack = LocalDate.of(2011, 12, 8);
+		// A year of data before the attack
+		this.compData = SyntheticData.data(attack, 262, 1);
+		this.marketData = SyntheticData.data(attack, 262, 2);
+		this.attackDate = EpochDay.toDate((int) attack.toEpochDay());
+		this.beta = CAPM.calculateBETA(this.compData, this.marketData, this.attackDate);
+		this.erm = new BigDecimal("0.05");
+		// Loaded once per run, like in the program
+		RiskFreeRates.getInstance();
+	}
+
+	@Benchmark
+	public BigDecimal calculateBETA(){
+		return CAPM.calculateBETA(this.compData, this.marketData, this.attackDate);
+	}
+
+	@Benchmark
+	public BigDecimal calculateCAR() throws IOException{
+		return CAPM.calculateCAR(this.attackDate, this.beta, this.erm);
+	}
+
+	@Benchmark
+	public BigDecimal dataProcess(){
+		return new DataProcess().process(this.compData);
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two JMH result files (-rf json) and reports the benchmarks which got slower than the threshold.
+ * Use: CompareResults [baseline.json] [current.json] ([threshold in %, default 10])
+ * The exit code is 1 when at least one benchmark regressed.
+ * @author Aeilko Bos
+ */
+public class CompareResults {
+	private static final Pattern BENCHMARK = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]+)\"");
+	private static final Pattern MODE = Pattern.compile("\"mode\"\\s*:\\s*\"([^\"]+)\"");
+	private static final Pattern PARAMS = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)\\}");
+	private static final Pattern SCORE = Pattern.compile("\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.eE]+|\"NaN\")");
+
+	private CompareResults(){	}
+
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.err.println("Use: CompareResults [baseline.json] [current.json] ([threshold %])");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		Map<String, double[]> baseline = CompareResults.read(args[0]);
+		Map<String, double[]> current = CompareResults.read(args[1]);
+
+		boolean regression = false;
+		for(Map.Entry<String, double[]> e: current.entrySet()){
+			double[] base = baseline.get(e.getKey());
+			if(base == null){
+				System.out.println(String.format("%-70s %12.3f  (new)", e.getKey(), e.getValue()[0]));
+				continue;
+			}
+			// Throughput: higher is better, other modes measure time: lower is better
+			double change = (e.getValue()[0] - base[0]) / base[0] * 100;
+			double slower = e.getValue()[1] > 0 ? -change : change;
+			boolean regressed = slower > threshold;
+			regression |= regressed;
+			System.out.println(String.format("%-70s %12.3f -> %12.3f  %+7.1f%%%s", e.getKey(), base[0], e.getValue()[0], change, regressed ? "  REGRESSION" : ""));
+		}
+		System.exit(regression ? 1 : 0);
+	}
+
+	/**
+	 * @param file JMH result file in json format
+	 * @return Per benchmark (name and parameters) the score and 1 for throughput or 0 for time based modes
+	 */
+	private static Map<String, double[]> read(String file) throws IOException{
+		String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+		Map<String, double[]> results = new LinkedHashMap<String, double[]>();
+		// Every result object starts with "jmhVersion"
+		String[] parts = json.split("\"jmhVersion\"");
+		for(int i = 1; i < parts.length; i++){
+			String part = parts[i];
+			Matcher name = BENCHMARK.matcher(part);
+			Matcher mode = MODE.matcher(part);
+			Matcher score = SCORE.matcher(part);
+			if(!name.find() || !mode.find() || !score.find() || score.group(1).startsWith("\"")){
+				continue;
+			}
+			Matcher params = PARAMS.matcher(part);
+			String key = name.group(1) + (params.find() ? "{" + params.group(1).replaceAll("\\s+", "") + "}" : "");
+			results.put(key, new double[]{ Double.parseDouble(score.group(1)), "thrpt".equals(mode.group(1)) ? 1 : 0 });
+		}
+		return results;
+	}
+}
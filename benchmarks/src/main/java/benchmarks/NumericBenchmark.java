@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import processing.CAPM;
+import processing.Numeric;
+import processing.NumericBackend;
+import stockdata.PriceSeries;
+import stockdata.RiskFreeRates;
+
+/**
+ * The event window of a CAPM calculation (expected, actual and abnormal return of every day) with each numeric backend.
+ * calculateCAR reads data/RFIrate.csv, so run the benchmarks from the root of the project.
+ * @author Aeilko Bos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericBenchmark {
+	@Param({ "BIG_DECIMAL", "DOUBLE", "FIXED" })
+	private NumericBackend backend;
+
+	private PriceSeries window;
+	private int attackDay;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException{
+		LocalDate attack = LocalDate.of(2011, 12, 8);
+		this.window = SyntheticData.data(attack.plusDays(5), 5, 3).getSeries();
+		this.attackDay = (int) attack.toEpochDay();
+		RiskFreeRates.getInstance();
+	}
+
+	@Benchmark
+	public void eventWindow(Blackhole bh) throws IOException{
+		this.eventWindow(this.backend.get(), bh);
+	}
+
+	private <T> void eventWindow(Numeric<T> num, Blackhole bh) throws IOException{
+		T beta = num.valueOf(new BigDecimal("0.8712"));
+		T erm = num.valueOf(0.0543);
+		for(int i = 0; i < this.window.size(); i++){
+			T open = num.valueOf(this.window.getOpen(i));
+			T adjClose = num.valueOf(this.window.getAdjClose(i));
+			T car = CAPM.calculateCAR(num, this.attackDay + i, beta, erm);
+			T actual = num.divide(num.subtract(adjClose, open), open);
+			bh.consume(num.toString(num.subtract(actual, car)));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stockdata.Data;
+import stockdata.PriceSeries;
+
+/**
+ * Parsing and saving of stock data.
+ * @author Aeilko Bos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+	// Number of trading days (1 and 10 years)
+	@Param({ "252", "2520" })
+	public int days;
+
+	private Path dir;
+	private Path standardFile;
+	private Path dutchFile;
+	private Path snapshotFile;
+	private Path outFile;
+	private Data data;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException{
+		LocalDate end = LocalDate.of(2011, 12, 30);
+		this.dir = Files.createTempDirectory("parse-benchmark");
+		this.standardFile = SyntheticData.write(this.dir.resolve("standard.csv"), end, this.days, 1, false);
+		this.dutchFile = SyntheticData.write(this.dir.resolve("dutch.csv"), end, this.days, 1, true);
+		this.snapshotFile = this.dir.resolve("snapshot.series");
+		this.outFile = this.dir.resolve("out");
+		this.data = new Data(this.standardFile.toString());
+		this.data.save(this.snapshotFile.toString());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException{
+		for(Path p: new Path[]{ this.standardFile, this.dutchFile, this.snapshotFile, this.outFile }){
+			Files.deleteIfExists(p);
+		}
+		Files.deleteIfExists(this.dir);
+	}
+
+	@Benchmark
+	public PriceSeries parseStandardCSV(){
+		return new Data(this.standardFile.toString()).getSeries();
+	}
+
+	@Benchmark
+	public PriceSeries parseDutchCSV(){
+		return new Data(this.dutchFile.toString()).getSeries();
+	}
+
+	@Benchmark
+	public PriceSeries loadSnapshot() throws IOException{
+		return Data.load(this.snapshotFile.toString()).getSeries();
+	}
+
+	@Benchmark
+	public void save(){
+		this.data.save(this.outFile.toString());
+	}
+
+	@Benchmark
+	public void exportCSV(){
+		this.data.exportCSV(this.outFile.toString());
+	}
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import processing.Kernels;
+import processing.LinearRegression;
+import processing.StreamingRegression;
+
+/**
+ * Regression of a year of daily returns.
+ * @author Aeilko Bos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegressionBenchmark {
+	// Number of points (one year of trading days)
+	@Param({ "250" })
+	public int points;
+
+	private double[] x;
+	private double[] y;
+	private BigDecimal[] bigX;
+	private BigDecimal[] bigY;
+
+	@Setup(Level.Trial)
+	public void setup(){
+		Random r = new Random(3);
+		this.x = new double[this.points];
+		this.y = new double[this.points];
+		this.bigX = new BigDecimal[this.points];
+		this.bigY = new BigDecimal[this.points];
+		for(int i = 0; i < this.points; i++){
+			this.x[i] = r.nextGaussian() * 0.01;
+			this.y[i] = 0.0002 + 1.1 * this.x[i] + r.nextGaussian() * 0.01;
+			this.bigX[i] = new BigDecimal(this.x[i]).round(program.Settings.mc);
+			this.bigY[i] = new BigDecimal(this.y[i]).round(program.Settings.mc);
+		}
+	}
+
+	@Benchmark
+	public BigDecimal linearRegression(){
+		LinearRegression lr = new LinearRegression(this.points);
+		for(int i = 0; i < this.points; i++){
+			lr.addPoint(this.bigX[i], this.bigY[i]);
+		}
+		lr.calculate();
+		return lr.getY();
+	}
+
+	@Benchmark
+	public double streamingRegression(){
+		StreamingRegression sr = new StreamingRegression();
+		for(int i = 0; i < this.points; i++){
+			sr.addPoint(this.x[i], this.y[i]);
+		}
+		return sr.getSlope();
+	}
+
+	@Benchmark
+	public double kernelSlope(){
+		return Kernels.slope(this.y, 0, this.x, 0, this.points);
+	}
+}
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+
+import stockdata.Data;
+
+/**
+ * Generates reproducible stock data in the Yahoo Finance CSV format, so the benchmarks don't need a network connection.
+ * Prices follow a random walk with the given seed, weekends are skipped and the newest day comes first.
+ * @author Aeilko Bos
+ */
+public class SyntheticData {
+
+	private SyntheticData(){	}
+
+
+	// Commands
+	/**
+	 * Writes a set of fixtures to the given directory
+	 * @param args [directory] (default: benchmarks/data)
+	 * @throws IOException If the files can't be written
+	 */
+	public static void main(String[] args) throws IOException{
+		Path dir = Paths.get(args.length > 0 ? args[0] : "benchmarks/data");
+		Files.createDirectories(dir);
+		LocalDate end = LocalDate.of(2011, 12, 30);
+		for(int years: new int[]{ 1, 10 }){
+			Files.write(dir.resolve("COMP_" + years + "y.csv"), SyntheticData.csv(end, years * 252, 1, false).getBytes(StandardCharsets.ISO_8859_1));
+			Files.write(dir.resolve("COMP_" + years + "y_nl.csv"), SyntheticData.csv(end, years * 252, 1, true).getBytes(StandardCharsets.ISO_8859_1));
+			Files.write(dir.resolve("MARKET_" + years + "y.csv"), SyntheticData.csv(end, years * 252, 2, false).getBytes(StandardCharsets.ISO_8859_1));
+		}
+	}
+
+	/**
+	 * Writes a CSV file with the given number of trading days
+	 * @param file The file
+	 * @param end The last day
+	 * @param days The number of trading days
+	 * @param seed The seed of the random walk
+	 * @param dutch Whether to use the Dutch CSV format
+	 * @return The file
+	 * @throws IOException If the file can't be written
+	 */
+	public static Path write(Path file, LocalDate end, int days, long seed, boolean dutch) throws IOException{
+		Files.write(file, SyntheticData.csv(end, days, seed, dutch).getBytes(StandardCharsets.ISO_8859_1));
+		return file;
+	}
+
+
+	// Queries
+	/**
+	 * @param end The last day
+	 * @param days The number of trading days
+	 * @param seed The seed of the random walk
+	 * @param dutch Whether to use the Dutch CSV format
+	 * @return The CSV data, newest day first
+	 */
+	public static String csv(LocalDate end, int days, long seed, boolean dutch){
+		Random r = new Random(seed);
+		char sep = dutch ? ';' : ',';
+		StringBuilder sb = new StringBuilder(days * 64);
+		sb.append("Date").append(sep).append("Open").append(sep).append("High").append(sep).append("Low").append(sep).append("Close").append(sep).append("Volume").append(sep).append("Adj Close").append('\n');
+		double price = 50 + r.nextInt(100);
+		LocalDate day = end;
+		for(int i = 0; i < days; i++){
+			while(day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY){
+				day = day.minusDays(1);
+			}
+			double open = price;
+			double close = price * (1 + r.nextGaussian() * 0.015);
+			double high = Math.max(open, close) * (1 + r.nextDouble() * 0.01);
+			double low = Math.min(open, close) * (1 - r.nextDouble() * 0.01);
+			long volume = 100000 + r.nextInt(5000000);
+			sb.append(day).append(sep);
+			SyntheticData.appendPrice(sb, open, dutch).append(sep);
+			SyntheticData.appendPrice(sb, high, dutch).append(sep);
+			SyntheticData.appendPrice(sb, low, dutch).append(sep);
+			SyntheticData.appendPrice(sb, close, dutch).append(sep);
+			sb.append(volume).append(sep);
+			SyntheticData.appendPrice(sb, close * 0.98, dutch).append('\n');
+			price = close;
+			day = day.minusDays(1);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param end The last day
+	 * @param days The number of trading days
+	 * @param seed The seed of the random walk
+	 * @return Data with the given number of trading days
+	 * @throws IOException If the temporary file can't be written
+	 */
+	public static Data data(LocalDate end, int days, long seed) throws IOException{
+		Path file = Files.createTempFile("synthetic", ".csv");
+		try{
+			return new Data(SyntheticData.write(file, end, days, seed, false).toString());
+		}
+		finally{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static StringBuilder appendPrice(StringBuilder sb, double price, boolean dutch){
+		// Six decimals, like Yahoo Finance
+		long fixed = Math.round(price * 1000000);
+		sb.append(fixed / 1000000).append(dutch ? ',' : '.');
+		String decimals = Long.toString(fixed % 1000000);
+		for(int i = decimals.length(); i < 6; i++){
+			sb.append('0');
+		}
+		return sb.append(decimals);
+	}
+}
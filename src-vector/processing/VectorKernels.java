@@ -0,0 +1,97 @@
+package processing;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of the Kernels with the Vector API, a vector holds as many doubles as the widest SIMD registers of
+ * the processor. The elements after the last whole vector are handled by a scalar loop.
+ * The element-wise kernels give the same results as ScalarKernels, the reductions add per lane and combine the lanes
+ * at the end, which can differ in the last digits.
+ *
+ * jdk.incubator.vector is an incubator module in Java 17, so this class is compiled separately from the other sources:
+ *   javac --add-modules jdk.incubator.vector -cp out -d out src-vector/processing/VectorKernels.java
+ * Kernels only loads it when the program runs with --add-modules jdk.incubator.vector.
+ * @author Aeilko Bos
+ */
+class VectorKernels extends ScalarKernels {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+
+	// Commands
+	@Override
+	void simpleReturns(double[] prices, int from, double[] out, int outFrom, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector p0 = DoubleVector.fromArray(SPECIES, prices, from + i);
+			DoubleVector p1 = DoubleVector.fromArray(SPECIES, prices, from + i + 1);
+			p1.sub(p0).div(p0).intoArray(out, outFrom + i);
+		}
+		super.simpleReturns(prices, from + i, out, outFrom + i, length - i);
+	}
+
+	@Override
+	void abnormal(double[] y, int yFrom, double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector expected = DoubleVector.fromArray(SPECIES, x, xFrom + i).mul(beta).add(alpha);
+			DoubleVector.fromArray(SPECIES, y, yFrom + i).sub(expected).intoArray(out, outFrom + i);
+		}
+		super.abnormal(y, yFrom + i, x, xFrom + i, alpha, beta, out, outFrom + i, length - i);
+	}
+
+	@Override
+	void expected(double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector.fromArray(SPECIES, x, xFrom + i).mul(beta).add(alpha).intoArray(out, outFrom + i);
+		}
+		super.expected(x, xFrom + i, alpha, beta, out, outFrom + i, length - i);
+	}
+
+
+	// Queries
+	@Override
+	double sum(double[] a, int from, int length){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			acc = acc.add(DoubleVector.fromArray(SPECIES, a, from + i));
+		}
+		return acc.reduceLanes(VectorOperators.ADD) + super.sum(a, from + i, length - i);
+	}
+
+	@Override
+	double dot(double[] a, int aFrom, double[] b, int bFrom, int length){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			acc = DoubleVector.fromArray(SPECIES, a, aFrom + i).fma(DoubleVector.fromArray(SPECIES, b, bFrom + i), acc);
+		}
+		return acc.reduceLanes(VectorOperators.ADD) + super.dot(a, aFrom + i, b, bFrom + i, length - i);
+	}
+
+	@Override
+	double centeredDot(double[] a, int aFrom, double meanA, double[] b, int bFrom, double meanB, int length){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector da = DoubleVector.fromArray(SPECIES, a, aFrom + i).sub(meanA);
+			DoubleVector db = DoubleVector.fromArray(SPECIES, b, bFrom + i).sub(meanB);
+			acc = da.fma(db, acc);
+		}
+		return acc.reduceLanes(VectorOperators.ADD) + super.centeredDot(a, aFrom + i, meanA, b, bFrom + i, meanB, length - i);
+	}
+
+	@Override
+	boolean isVectorized(){
+		return true;
+	}
+}
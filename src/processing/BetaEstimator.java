@@ -0,0 +1,74 @@
+package processing;
+
+/**
+ * Estimators of the beta of a company from aligned daily company and market returns.
+ * @author Aeilko Bos
+ */
+public enum BetaEstimator {
+	/**
+	 * Slope of the company returns on the market returns of the same day
+	 */
+	OLS {
+		@Override
+		public double estimate(double[] comp, double[] market, int n){
+			return BetaEstimator.slope(comp, market, n, 0);
+		}
+	},
+
+	/**
+	 * Scholes-Williams beta for thinly traded stocks: (b[-1] + b[0] + b[+1]) / (1 + 2 * rho), where b[l] is the
+	 * slope on the market return l days away and rho the first order autocorrelation of the market returns.
+	 */
+	SCHOLES_WILLIAMS {
+		@Override
+		public double estimate(double[] comp, double[] market, int n){
+			double mean0 = Kernels.mean(market, 0, n - 1);
+			double mean1 = Kernels.mean(market, 1, n - 1);
+			double rho = Kernels.centeredDot(market, 0, mean0, market, 1, mean1, n - 1)
+					/ Math.sqrt(Kernels.centeredSumOfSquares(market, 0, mean0, n - 1) * Kernels.centeredSumOfSquares(market, 1, mean1, n - 1));
+			double sum = BetaEstimator.slope(comp, market, n, -1) + BetaEstimator.slope(comp, market, n, 0) + BetaEstimator.slope(comp, market, n, 1);
+			return sum / (1 + 2 * rho);
+		}
+	},
+
+	/**
+	 * Dimson beta for thinly traded stocks: the sum of the coefficients of a regression of the company returns on the
+	 * market returns of DIMSON_LAGS days before up to DIMSON_LAGS days after.
+	 */
+	DIMSON {
+		@Override
+		public double estimate(double[] comp, double[] market, int n){
+			int lags = DIMSON_LAGS;
+			int rows = n - 2 * lags;
+			double[] y = new double[rows];
+			double[][] factors = new double[2 * lags + 1][rows];
+			for(int t = 0; t < rows; t++){
+				y[t] = comp[t + lags];
+				for(int l = 0; l <= 2 * lags; l++){
+					factors[l][t] = market[t + l];
+				}
+			}
+			return new MultiFactorRegression(y, factors, 0, rows).getCoefficientSum();
+		}
+	};
+
+	// Number of leading and lagging market returns of the Dimson beta
+	public static final int DIMSON_LAGS = 1;
+
+	/**
+	 * @param comp The company returns
+	 * @param market The market returns of the same days
+	 * @param n The number of returns
+	 * @return The beta of the company (not adjusted)
+	 */
+	public abstract double estimate(double[] comp, double[] market, int n);
+
+	/**
+	 * @param lag Offset of the market return relative to the company return
+	 * @return The slope of comp[t] on market[t+lag]
+	 */
+	private static double slope(double[] comp, double[] market, int n, int lag){
+		int from = Math.max(0, -lag);
+		return Kernels.slope(comp, from, market, from + lag, n - Math.abs(lag));
+	}
+}
@@ -0,0 +1,242 @@
+package processing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import stockdata.EpochDay;
+import stockdata.PriceSeries;
+import stockdata.Resampler;
+import stockdata.TradingCalendar;
+import stockdata.Universe;
+
+/**
+ * BETA of many companies against one market on many days, in one pass over the universe.
+ * The windows are the same as in CAPM.calculateBETA: the returns on the shared trading days (or weeks or months) of
+ * the year before a day, the interval is given like Settings.betaInterval.
+ * The returns of the market are calculated once; a company which traded on every trading day of the market uses
+ * that column as is, only companies with gaps get their own join of the market returns.
+ * The companies are split over a fork-join pool in partitions, every company is one pass over its returns.
+ * @author Aeilko Bos
+ */
+public class BetaMatrix {
+	// Number of companies below which a partition isn't split any further
+	private static final int THRESHOLD = 4;
+
+	// The companies (rows)
+	private final String[] tickers;
+	// The epoch days (columns)
+	private final int[] days;
+	// The interval of the returns (d=Day, w=Week, m=Month)
+	private final char interval;
+	// The (Blume adjusted) BETA per company and day, NaN if it can't be calculated
+	private final double[][] beta;
+	// Number of returns the BETA is based on, per company and day
+	private final int[][] count;
+	// The market return of the year before every day
+	private final double[] erm;
+
+
+	// Constructor
+	/**
+	 * Calculates the BETA of every company on every day
+	 * @param universe The series of the companies and the market
+	 * @param market The market
+	 * @param tickers The companies
+	 * @param days The epoch days
+	 * @param interval The interval of the returns (d=Day, w=Week, m=Month), bars are resampled from the daily series
+	 * @param estimator The estimator of the BETA
+	 * @param pool The pool the companies are calculated on
+	 * @throws IllegalArgumentException If the market isn't in the universe or the interval is unknown
+	 */
+	public BetaMatrix(Universe universe, String market, String[] tickers, int[] days, char interval, BetaEstimator estimator, ForkJoinPool pool){
+		PriceSeries dailyMarket = universe.get(market);
+		if(dailyMarket == null){
+			throw new IllegalArgumentException(market + " is not in the universe");
+		}
+		PriceSeries marketSeries = Resampler.resample(dailyMarket, interval);
+		this.tickers = tickers.clone();
+		this.days = days.clone();
+		this.interval = interval;
+		this.beta = new double[tickers.length][days.length];
+		this.count = new int[tickers.length][days.length];
+		this.erm = new double[days.length];
+
+		// Start of the window of every day
+		int[] starts = new int[days.length];
+		for(int d = 0; d < days.length; d++){
+			starts[d] = (int) EpochDay.toLocalDate(days[d]).minusYears(1).toEpochDay();
+		}
+
+		// The market return column, return r is from trading day r to r+1 of the market
+		double[] prices = new double[marketSeries.size()];
+		for(int i = 0; i < prices.length; i++){
+			prices[i] = marketSeries.getAdjClose(i);
+		}
+		double[] marketReturns = new double[Math.max(prices.length - 1, 0)];
+		Kernels.simpleReturns(prices, 0, marketReturns, 0, marketReturns.length);
+
+		// ERM on the daily opening prices of the market, like CAPMEvent
+		for(int d = 0; d < days.length; d++){
+			int startIndex = dailyMarket.ceilingIndex(starts[d]);
+			int eventIndex = dailyMarket.floorIndex(days[d]);
+			this.erm[d] = startIndex < dailyMarket.size() && eventIndex >= 0 ? (dailyMarket.getOpen(eventIndex) - dailyMarket.getOpen(startIndex)) / dailyMarket.getOpen(startIndex) : Double.NaN;
+		}
+
+		pool.invoke(new Partition(universe, marketSeries, marketReturns, starts, estimator, 0, tickers.length));
+	}
+
+
+	// Commands
+	/**
+	 * Calculates the row of one company
+	 */
+	private void calculate(int t, PriceSeries comp, PriceSeries market, double[] marketReturns, int[] starts, BetaEstimator estimator){
+		TradingCalendar calendar = new TradingCalendar(comp, market);
+		int size = calendar.size();
+
+		// Return r ends on trading day r+1 of the calendar
+		double[] y;
+		double[] x;
+		int xOffset;
+		if(size > 0 && calendar.getRow(1, size - 1) - calendar.getRow(1, 0) == size - 1){
+			// Traded on every day of the market, the market column can be used as is
+			double[] prices = new double[size];
+			for(int i = 0; i < size; i++){
+				prices[i] = comp.getAdjClose(calendar.getRow(0, i));
+			}
+			y = new double[Math.max(size - 1, 0)];
+			Kernels.simpleReturns(prices, 0, y, 0, y.length);
+			x = marketReturns;
+			xOffset = calendar.getRow(1, 0);
+		}
+		else{
+			ReturnMatrix returns = ReturnMatrix.of(calendar, 0, size - 1, comp, market);
+			y = returns.getColumn(0);
+			x = returns.getColumn(1);
+			xOffset = 0;
+		}
+
+		for(int d = 0; d < this.days.length; d++){
+			int first = calendar.ceilingIndex(starts[d]);
+			// The last complete period before the day
+			int last = calendar.previous(Resampler.periodStart(this.days[d], this.interval));
+			int n = last - first;
+			this.count[t][d] = Math.max(n, 0);
+			if(n < 3){
+				this.beta[t][d] = Double.NaN;
+				continue;
+			}
+			double b;
+			if(estimator == BetaEstimator.OLS){
+				b = Kernels.slope(y, first, x, xOffset + first, n);
+			}
+			else{
+				b = estimator.estimate(Arrays.copyOfRange(y, first, last), Arrays.copyOfRange(x, xOffset + first, xOffset + last), n);
+			}
+			// Blume adjustment, like CAPM.calculateBETA
+			this.beta[t][d] = 2.0 / 3 * b + 1.0 / 3;
+		}
+	}
+
+	/**
+	 * Calculates the rows of the companies from up to to
+	 */
+	private class Partition extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Universe universe;
+		private final PriceSeries market;
+		private final double[] marketReturns;
+		private final int[] starts;
+		private final BetaEstimator estimator;
+		private final int from;
+		private final int to;
+
+		Partition(Universe universe, PriceSeries market, double[] marketReturns, int[] starts, BetaEstimator estimator, int from, int to){
+			this.universe = universe;
+			this.market = market;
+			this.marketReturns = marketReturns;
+			this.starts = starts;
+			this.estimator = estimator;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(this.to - this.from > THRESHOLD){
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new Partition(this.universe, this.market, this.marketReturns, this.starts, this.estimator, this.from, mid),
+						new Partition(this.universe, this.market, this.marketReturns, this.starts, this.estimator, mid, this.to));
+				return;
+			}
+			for(int t = this.from; t < this.to; t++){
+				PriceSeries comp = this.universe.get(BetaMatrix.this.tickers[t]);
+				if(comp == null){
+					Arrays.fill(BetaMatrix.this.beta[t], Double.NaN);
+					continue;
+				}
+				BetaMatrix.this.calculate(t, Resampler.resample(comp, BetaMatrix.this.interval), this.market, this.marketReturns, this.starts, this.estimator);
+			}
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of companies
+	 */
+	public int rows(){
+		return this.tickers.length;
+	}
+
+	/**
+	 * @return The number of days
+	 */
+	public int columns(){
+		return this.days.length;
+	}
+
+	/**
+	 * @param t The index of the company
+	 * @return The company
+	 */
+	public String getTicker(int t){
+		return this.tickers[t];
+	}
+
+	/**
+	 * @param d The index of the day
+	 * @return The epoch day
+	 */
+	public int getDay(int d){
+		return this.days[d];
+	}
+
+	/**
+	 * @param t The index of the company
+	 * @param d The index of the day
+	 * @return The (Blume adjusted) BETA, NaN if there are less than 3 returns or the company isn't in the universe
+	 */
+	public double getBeta(int t, int d){
+		return this.beta[t][d];
+	}
+
+	/**
+	 * @param t The index of the company
+	 * @param d The index of the day
+	 * @return The number of returns the BETA is based on
+	 */
+	public int getCount(int t, int d){
+		return this.count[t][d];
+	}
+
+	/**
+	 * @param d The index of the day
+	 * @return The market return from the first opening of the year before the day up to the day, NaN without market data
+	 */
+	public double getERM(int d){
+		return this.erm[d];
+	}
+}
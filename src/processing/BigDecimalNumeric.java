@@ -0,0 +1,57 @@
+package processing;
+
+import java.math.BigDecimal;
+
+import program.Settings;
+
+/**
+ * BigDecimal arithmetic, divisions are rounded with Settings.mc and everything else is exact.
+ * @author Aeilko Bos
+ */
+public class BigDecimalNumeric implements Numeric<BigDecimal> {
+
+	@Override
+	public BigDecimal valueOf(double value){
+		return BigDecimal.valueOf(value);
+	}
+
+	@Override
+	public BigDecimal valueOf(BigDecimal value){
+		return value;
+	}
+
+	@Override
+	public BigDecimal valueOf(long value){
+		return BigDecimal.valueOf(value);
+	}
+
+	@Override
+	public BigDecimal add(BigDecimal a, BigDecimal b){
+		return a.add(b);
+	}
+
+	@Override
+	public BigDecimal subtract(BigDecimal a, BigDecimal b){
+		return a.subtract(b);
+	}
+
+	@Override
+	public BigDecimal multiply(BigDecimal a, BigDecimal b){
+		return a.multiply(b);
+	}
+
+	@Override
+	public BigDecimal divide(BigDecimal a, BigDecimal b){
+		return a.divide(b, Settings.mc);
+	}
+
+	@Override
+	public double toDouble(BigDecimal value){
+		return value.doubleValue();
+	}
+
+	@Override
+	public String toString(BigDecimal value){
+		return value.toString();
+	}
+}
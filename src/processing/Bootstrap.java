@@ -0,0 +1,78 @@
+package processing;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Percentile bootstrap confidence intervals of a mean.
+ * The resamples are split over a fork-join pool. Every resample draws from its own generator, seeded with the seed
+ * and its number, so the interval is the same for every split and number of threads.
+ * @author Aeilko Bos
+ */
+public class Bootstrap {
+	// Number of resamples below which a task isn't split any further
+	private static final int THRESHOLD = 256;
+
+	private Bootstrap(){	}
+
+
+	// Queries
+	/**
+	 * @param values The sample, like the CAR of every event
+	 * @param resamples The number of resamples
+	 * @param level The confidence level, like 0.95
+	 * @param seed The seed of the random generators
+	 * @param pool The pool the resamples are calculated on
+	 * @return The lower and upper bound of the interval
+	 * @require values.length > 0 && resamples > 0 && level > 0 && level < 1
+	 */
+	public static double[] meanInterval(double[] values, int resamples, double level, long seed, ForkJoinPool pool){
+		double[] means = new double[resamples];
+		pool.invoke(new Resamples(values, means, seed, 0, resamples));
+		Arrays.sort(means);
+		int lo = (int) Math.floor((1 - level) / 2 * resamples);
+		int hi = (int) Math.ceil((1 + level) / 2 * resamples) - 1;
+		return new double[]{ means[Math.max(lo, 0)], means[Math.min(hi, resamples - 1)] };
+	}
+
+	/**
+	 * Calculates the means of the resamples from up to to
+	 */
+	private static class Resamples extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] values;
+		private final double[] means;
+		private final long seed;
+		private final int from;
+		private final int to;
+
+		Resamples(double[] values, double[] means, long seed, int from, int to){
+			this.values = values;
+			this.means = means;
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(this.to - this.from > THRESHOLD){
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new Resamples(this.values, this.means, this.seed, this.from, mid), new Resamples(this.values, this.means, this.seed, mid, this.to));
+				return;
+			}
+			int n = this.values.length;
+			for(int b = this.from; b < this.to; b++){
+				SplittableRandom random = new SplittableRandom(this.seed * 0x9E3779B97F4A7C15L + b);
+				double sum = 0;
+				for(int i = 0; i < n; i++){
+					sum += this.values[random.nextInt(n)];
+				}
+				this.means[b] = sum / n;
+			}
+		}
+	}
+}
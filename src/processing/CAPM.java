@@ -2,35 +2,27 @@ package processing;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 
 import program.Settings;
 import stockdata.Data;
+import stockdata.EpochDay;
+import stockdata.PriceSeries;
+import stockdata.Resampler;
+import stockdata.RiskFreeRates;
+import stockdata.TradingCalendar;
 
 
 public class CAPM{
 
-	public static BigDecimal calculateCAR(Date d, BigDecimal BETA, BigDecimal ERM) throws IOException, ParseException {		
-		// Get Risk-Free interest
-		BigDecimal RF = new BigDecimal(0);
-		List<String> lines = Files.readAllLines(Paths.get("data/RFIrate.csv"));
-		String O10Y = "Over_10_Years";
-		for(String line: lines){
-			String[] cols = line.split(";");
-			if(O10Y.equals(cols[1])){
-				// RF over 10 years
-				Date date = Settings.formatter.parse(cols[0]);
-				if(d.compareTo(date) == 0){
-					RF = new BigDecimal(cols[2].replace(',', '.'));
-				}
-			}
-		}
+	public static BigDecimal calculateCAR(Date d, BigDecimal BETA, BigDecimal ERM) throws IOException {
+		return CAPM.calculateCAR(EpochDay.of(d), BETA, ERM);
+	}
+	
+	public static BigDecimal calculateCAR(int day, BigDecimal BETA, BigDecimal ERM) throws IOException {		
+		// Get Risk-Free interest (RF over 10 years)
+		double rate = RiskFreeRates.getInstance().getRate(RiskFreeRates.Type.Over_10_Years, day);
+		BigDecimal RF = BigDecimal.valueOf(rate);
 		
 		// RF is in percantages, should be in number
 		RF = RF.divide(new BigDecimal(100));
@@ -41,6 +33,23 @@ public class CAPM{
 	}
 	
 	
+	/**
+	 * Calculates the expected return of the given day with the given arithmetic: RF + BETA * (ERM - RF)
+	 * @param num The arithmetic
+	 * @param day The epoch day
+	 * @param BETA The beta value
+	 * @param ERM The market return
+	 * @return The expected return
+	 * @throws IOException If the risk free rates can't be read
+	 */
+	public static <T> T calculateCAR(Numeric<T> num, int day, T BETA, T ERM) throws IOException {
+		// Get Risk-Free interest (RF over 10 years), in percentages
+		double rate = RiskFreeRates.getInstance().getRate(RiskFreeRates.Type.Over_10_Years, day);
+		T RF = num.divide(num.valueOf(rate), num.valueOf(100));
+		return num.add(RF, num.multiply(BETA, num.subtract(ERM, RF)));
+	}
+	
+	
 	/**
 	 * Calculates the beta value and the market return of the given company on the day given.
 	 * @param company The handle of the company for which the values will be calculated
@@ -50,55 +59,52 @@ public class CAPM{
 	 * 								[1] = market return
 	 */
 	public static BigDecimal calculateBETA(Data compData, Data marketData, Date d){
+		return CAPM.calculateBETA(compData, marketData, EpochDay.of(d));
+	}
+	
+	/**
+	 * Calculates the beta value of the given company on the day given.
+	 * @param compData The stock data of the company
+	 * @param marketData The stock data of the market
+	 * @param day The epoch day for which the value will be calculated
+	 * @return The (Blume adjusted) beta value
+	 */
+	public static BigDecimal calculateBETA(Data compData, Data marketData, int day){
 		BigDecimal BETA = new BigDecimal(0);
 		
-		// Initialize the plotting loop
-		Calendar curDate = Calendar.getInstance();
-		curDate.setTime(d);
-		curDate.add(Calendar.YEAR, -1);
-		// Find the first day with data (= exchange was open)
-		while(compData.getAdjClose(curDate.getTime()) == null){
-			curDate.add(Calendar.DATE, 1);
+		// Join both series on the days (or periods) on which both exchanges were open
+		PriceSeries comp = compData.getSeries(Settings.betaInterval);
+		PriceSeries market = marketData.getSeries(Settings.betaInterval);
+		TradingCalendar calendar = new TradingCalendar(comp, market);
+		int first = calendar.ceilingIndex((int) EpochDay.toLocalDate(day).minusYears(1).toEpochDay());
+		// The last complete period before the day
+		int last = calendar.previous(Resampler.periodStart(day, Settings.betaInterval));
+		
+		if(last - first < 3){
+			throw new ArithmeticException("Not enough shared trading days to calculate BETA");
 		}
-		BigDecimal lastComp = new BigDecimal(0);
-		BigDecimal curComp = compData.getAdjClose(curDate.getTime());
-		BigDecimal lastMarket = new BigDecimal(0);
-		BigDecimal curMarket = marketData.getAdjClose(curDate.getTime());
-		HashMap<BigDecimal, BigDecimal> plot = new HashMap<BigDecimal, BigDecimal>();
-		curDate.add(Calendar.DATE, 1);
-		// Loop over all days and plot the increase.
-		while(curDate.getTime().before(d)){
-			// Ignore days without data
-			if(compData.getAdjClose(curDate.getTime()) == null || marketData.getAdjClose(curDate.getTime()) == null){
-				curDate.add(Calendar.DATE, 1);
-				continue;
+		
+		if(Settings.exactRegression){
+			// Plot the increase on every trading day since the previous trading day in LinearRegression
+			LinearRegression LR = new LinearRegression(last - first);
+			for(int i = first+1; i <= last; i++){
+				BigDecimal lastComp = BigDecimal.valueOf(comp.getAdjClose(calendar.getRow(0, i-1)));
+				BigDecimal curComp = BigDecimal.valueOf(comp.getAdjClose(calendar.getRow(0, i)));
+				BigDecimal lastMarket = BigDecimal.valueOf(market.getAdjClose(calendar.getRow(1, i-1)));
+				BigDecimal curMarket = BigDecimal.valueOf(market.getAdjClose(calendar.getRow(1, i)));
+				
+				// Calculate increase since yesterday
+				BigDecimal compIncrease = curComp.subtract(lastComp).divide(lastComp, Settings.mc);
+				BigDecimal marketIncrease = curMarket.subtract(lastMarket).divide(lastMarket, Settings.mc);
+				LR.addPoint(marketIncrease, compIncrease);
 			}
-			
-			// Update values
-			lastComp = curComp;
-			lastMarket = curMarket;
-			curComp = compData.getAdjClose(curDate.getTime());
-			curMarket = marketData.getAdjClose(curDate.getTime());
-			
-			// Calculate increase since yesterday
-			BigDecimal comp = curComp.subtract(lastComp).divide(lastComp, Settings.mc);
-			BigDecimal market = curMarket.subtract(lastMarket).divide(lastMarket, Settings.mc);
-			
-			// Save values
-			plot.put(comp, market);
-			
-			// Add 1 day;
-			curDate.add(Calendar.DATE, 1);
+			LR.calculate();
+			BETA = LR.getY();
 		}
-		
-		
-		// Plot in LinearRegression
-		LinearRegression LR = new LinearRegression(plot.size());
-		for(BigDecimal key: plot.keySet()){
-			LR.addPoint(key, plot.get(key));
+		else{
+			ReturnMatrix returns = ReturnMatrix.of(calendar, first, last, comp, market);
+			BETA = new BigDecimal(Settings.betaEstimator.estimate(returns.getColumn(0), returns.getColumn(1), returns.rows()), Settings.mc);
 		}
-		LR.calculate();
-		BETA = LR.getY();
 		
 		// Adjust BETA
 		BigDecimal oneThird = new BigDecimal(1).divide(new BigDecimal(3), Settings.mc);
@@ -108,4 +114,64 @@ public class CAPM{
 		// Return BETA
 		return BETA;
 	}
+	
+	/**
+	 * Returns the BETA of the given day from a rolling calculation, adjusted like calculateBETA.
+	 * @param rolling The rolling BETA of the company and market
+	 * @param day The epoch day for which the value is requested
+	 * @return The adjusted BETA
+	 * @require rolling.contains(day)
+	 */
+	public static BigDecimal calculateBETA(RollingBeta rolling, int day){
+		if(rolling.getCount(day) < 3){
+			throw new ArithmeticException("Not enough shared trading days to calculate BETA");
+		}
+		BigDecimal BETA = new BigDecimal(rolling.getBeta(day), Settings.mc);
+		
+		// Adjust BETA
+		BigDecimal oneThird = new BigDecimal(1).divide(new BigDecimal(3), Settings.mc);
+		BigDecimal twoThird = new BigDecimal(2).divide(new BigDecimal(3), Settings.mc);
+		return twoThird.multiply(BETA).add(oneThird);
+	}
+	
+	/**
+	 * Fits a multi-factor model (e.g. Fama-French) of the company on the year before the given day.
+	 * @param compData The stock data of the company
+	 * @param d The date for which the model is fitted
+	 * @param factorData The stock data of the factors, like a market index and size or value portfolios
+	 * @return The regression of the company returns on the factor returns
+	 */
+	public static MultiFactorRegression calculateFactorModel(Data compData, Date d, Data... factorData){
+		return CAPM.calculateFactorModel(compData, EpochDay.of(d), factorData);
+	}
+	
+	/**
+	 * Fits a multi-factor model (e.g. Fama-French) of the company on the year before the given day.
+	 * @param compData The stock data of the company
+	 * @param day The epoch day for which the model is fitted
+	 * @param factorData The stock data of the factors, like a market index and size or value portfolios
+	 * @return The regression of the company returns on the factor returns
+	 * @throws ArithmeticException If there are not enough shared trading days or the factors are linearly dependent
+	 */
+	public static MultiFactorRegression calculateFactorModel(Data compData, int day, Data... factorData){
+		PriceSeries[] series = new PriceSeries[factorData.length + 1];
+		series[0] = compData.getSeries();
+		for(int i = 0; i < factorData.length; i++){
+			series[i+1] = factorData[i].getSeries();
+		}
+		TradingCalendar calendar = new TradingCalendar(series);
+		int first = calendar.ceilingIndex((int) EpochDay.toLocalDate(day).minusYears(1).toEpochDay());
+		int last = calendar.previous(day);
+		
+		if(last - first <= factorData.length + 1){
+			throw new ArithmeticException("Not enough shared trading days to fit the factor model");
+		}
+		
+		ReturnMatrix returns = ReturnMatrix.of(calendar, first, last, series);
+		double[][] factors = new double[factorData.length][];
+		for(int i = 0; i < factors.length; i++){
+			factors[i] = returns.getColumn(i+1);
+		}
+		return new MultiFactorRegression(returns.getColumn(0), factors, 0, returns.rows());
+	}
 }
@@ -0,0 +1,114 @@
+package processing;
+
+import java.util.Arrays;
+
+/**
+ * Means over the events of an event study, calculated day by day over the event window.
+ * All means are NaN when no event could be calculated, check getCount() first.
+ * @author Aeilko Bos
+ */
+public class CrossSection {
+	// The windows of the events
+	private final EventWindow window;
+	// Number of events
+	private final int count;
+	// Average abnormal return per day of the event window
+	private final double[] aar;
+	// Mean CAR and BHAR over the event window
+	private final double meanCAR;
+	private final double meanBHAR;
+
+
+	// Constructor
+	/**
+	 * Calculates the means of the given events
+	 * @param window The windows of the events
+	 * @param results The events, null for events which failed
+	 */
+	public CrossSection(EventWindow window, EventResult[] results){
+		this.window = window;
+		int days = window.getEventLength();
+		double[] sum = new double[days];
+		double car = 0;
+		double bhar = 0;
+		int n = 0;
+		for(EventResult r: results){
+			if(r == null){
+				continue;
+			}
+			for(int i = 0; i < days; i++){
+				sum[i] += r.getAbnormal(window.getEventStart() + i);
+			}
+			car += r.getCAR();
+			bhar += r.getBHAR();
+			n++;
+		}
+		if(n == 0){
+			// There is no mean of no events
+			Arrays.fill(sum, Double.NaN);
+			car = Double.NaN;
+			bhar = Double.NaN;
+		}
+		else{
+			for(int i = 0; i < days; i++){
+				sum[i] /= n;
+			}
+			car /= n;
+			bhar /= n;
+		}
+		this.count = n;
+		this.aar = sum;
+		this.meanCAR = car;
+		this.meanBHAR = bhar;
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of events
+	 */
+	public int getCount(){
+		return this.count;
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The average abnormal return of the day
+	 */
+	public double getAAR(int t){
+		return this.aar[t - this.window.getEventStart()];
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The cumulative average abnormal return from the start of the event window up to the day
+	 */
+	public double getCAAR(int t){
+		double caar = 0;
+		for(int i = 0; i <= t - this.window.getEventStart(); i++){
+			caar += this.aar[i];
+		}
+		return caar;
+	}
+
+	/**
+	 * @return The mean CAR over the event window
+	 */
+	public double getMeanCAR(){
+		return this.meanCAR;
+	}
+
+	/**
+	 * @return The mean BHAR over the event window
+	 */
+	public double getMeanBHAR(){
+		return this.meanBHAR;
+	}
+
+	/**
+	 * @return The windows of the events
+	 */
+	public EventWindow getWindow(){
+		return this.window;
+	}
+}
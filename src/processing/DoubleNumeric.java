@@ -0,0 +1,59 @@
+package processing;
+
+import java.math.BigDecimal;
+
+/**
+ * Double precision arithmetic.
+ * @author Aeilko Bos
+ */
+public class DoubleNumeric implements Numeric<Double> {
+
+	@Override
+	public Double valueOf(double value){
+		return value;
+	}
+
+	@Override
+	public Double valueOf(BigDecimal value){
+		return value.doubleValue();
+	}
+
+	@Override
+	public Double valueOf(long value){
+		return (double) value;
+	}
+
+	@Override
+	public Double add(Double a, Double b){
+		return a + b;
+	}
+
+	@Override
+	public Double subtract(Double a, Double b){
+		return a - b;
+	}
+
+	@Override
+	public Double multiply(Double a, Double b){
+		return a * b;
+	}
+
+	@Override
+	public Double divide(Double a, Double b){
+		if(b == 0){
+			throw new ArithmeticException("Division by zero");
+		}
+		return a / b;
+	}
+
+	@Override
+	public double toDouble(Double value){
+		return value;
+	}
+
+	@Override
+	public String toString(Double value){
+		// Plain notation, never 1.0E-4
+		return BigDecimal.valueOf(value).toPlainString();
+	}
+}
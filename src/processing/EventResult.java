@@ -0,0 +1,208 @@
+package processing;
+
+/**
+ * The abnormal returns of one event over its event window, with the statistics of the estimation window.
+ * @author Aeilko Bos
+ */
+public class EventResult {
+	// The company and market
+	private final String comp;
+	private final String market;
+	// Epoch day of day 0
+	private final int day;
+	// The windows
+	private final EventWindow window;
+	// The model estimated on the estimation window
+	private final double alpha;
+	private final double beta;
+	// Variance of the abnormal returns in the estimation window
+	private final double variance;
+	// Number of returns, mean market return and sum of squared deviations of the market returns in the estimation window
+	private final int estimationCount;
+	private final double estimationMarketMean;
+	private final double estimationMarketSxx;
+	// Per day of the event window: the return of the company, of the market and the normal return
+	private final double[] actual;
+	private final double[] marketReturns;
+	private final double[] expected;
+	// Abnormal returns of the days of the estimation window
+	private final double[] estimationAbnormal;
+
+
+	// Constructor
+	EventResult(String comp, String market, int day, EventWindow window, double alpha, double beta, double variance,
+			int estimationCount, double estimationMarketMean, double estimationMarketSxx, double[] actual, double[] marketReturns, double[] expected, double[] estimationAbnormal){
+		this.comp = comp;
+		this.market = market;
+		this.day = day;
+		this.window = window;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.variance = variance;
+		this.estimationCount = estimationCount;
+		this.estimationMarketMean = estimationMarketMean;
+		this.estimationMarketSxx = estimationMarketSxx;
+		this.actual = actual;
+		this.marketReturns = marketReturns;
+		this.expected = expected;
+		this.estimationAbnormal = estimationAbnormal;
+	}
+
+
+	// Queries
+	/**
+	 * @return The company
+	 */
+	public String getComp(){
+		return this.comp;
+	}
+
+	/**
+	 * @return The market
+	 */
+	public String getMarket(){
+		return this.market;
+	}
+
+	/**
+	 * @return The epoch day of day 0, the first trading day on or after the event
+	 */
+	public int getDay(){
+		return this.day;
+	}
+
+	/**
+	 * @return The windows of the event
+	 */
+	public EventWindow getWindow(){
+		return this.window;
+	}
+
+	/**
+	 * @return The intercept of the model
+	 */
+	public double getAlpha(){
+		return this.alpha;
+	}
+
+	/**
+	 * @return The slope of the model on the market return
+	 */
+	public double getBeta(){
+		return this.beta;
+	}
+
+	/**
+	 * @return The variance of the abnormal returns in the estimation window
+	 */
+	public double getVariance(){
+		return this.variance;
+	}
+
+	/**
+	 * @return The number of returns in the estimation window
+	 */
+	public int getEstimationCount(){
+		return this.estimationCount;
+	}
+
+	/**
+	 * @return The mean market return in the estimation window
+	 */
+	public double getEstimationMarketMean(){
+		return this.estimationMarketMean;
+	}
+
+	/**
+	 * @return The sum of squared deviations of the market returns from their mean in the estimation window
+	 */
+	public double getEstimationMarketSxx(){
+		return this.estimationMarketSxx;
+	}
+
+	/**
+	 * @return The abnormal returns of the days of the estimation window, not a copy
+	 */
+	public double[] getEstimationAbnormal(){
+		return this.estimationAbnormal;
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The return of the company
+	 */
+	public double getActual(int t){
+		return this.actual[t - this.window.getEventStart()];
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The return of the market
+	 */
+	public double getMarketReturn(int t){
+		return this.marketReturns[t - this.window.getEventStart()];
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The normal return of the company according to the model
+	 */
+	public double getExpected(int t){
+		return this.expected[t - this.window.getEventStart()];
+	}
+
+	/**
+	 * @param t The day relative to the event, within the event window
+	 * @return The abnormal return
+	 */
+	public double getAbnormal(int t){
+		int i = t - this.window.getEventStart();
+		return this.actual[i] - this.expected[i];
+	}
+
+	/**
+	 * @return The cumulative abnormal return over the event window
+	 */
+	public double getCAR(){
+		return this.getCAR(this.window.getEventStart(), this.window.getEventEnd());
+	}
+
+	/**
+	 * @param from The first day relative to the event
+	 * @param to The last day relative to the event
+	 * @return The cumulative abnormal return from day from up to and including day to
+	 */
+	public double getCAR(int from, int to){
+		double car = 0;
+		for(int i = from - this.window.getEventStart(); i <= to - this.window.getEventStart(); i++){
+			car += this.actual[i] - this.expected[i];
+		}
+		return car;
+	}
+
+	/**
+	 * @return The buy-and-hold abnormal return over the event window: the compounded return minus the compounded normal return
+	 */
+	public double getBHAR(){
+		double held = 1;
+		double normal = 1;
+		for(int i = 0; i < this.actual.length; i++){
+			held *= 1 + this.actual[i];
+			normal *= 1 + this.expected[i];
+		}
+		return held - normal;
+	}
+
+	/**
+	 * @return The cumulative abnormal return up to every day of the event window
+	 */
+	public double[] getCumulative(){
+		double[] cumulative = new double[this.actual.length];
+		double car = 0;
+		for(int i = 0; i < cumulative.length; i++){
+			car += this.actual[i] - this.expected[i];
+			cumulative[i] = car;
+		}
+		return cumulative;
+	}
+}
@@ -0,0 +1,166 @@
+package processing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import stockdata.PriceSeries;
+import stockdata.TradingCalendar;
+import stockdata.Universe;
+
+/**
+ * Event windows over the series of a universe.
+ * The shared trading days and returns of every company and market pair are calculated once, after which a query
+ * only sums over slices of the return columns, so many events can be evaluated in one run.
+ * @author Aeilko Bos
+ */
+public class EventStudy {
+	// Maximum number of calendar days between the event and the first trading day on or after it (day 0)
+	public static final int MAX_EVENT_SHIFT = 4;
+
+	// The series
+	private final Universe universe;
+	// Calendar and returns per company and market pair
+	private final ConcurrentHashMap<String, Pair> pairs;
+
+
+	// Constructor
+	/**
+	 * @param universe The series of the companies and markets
+	 */
+	public EventStudy(Universe universe){
+		this.universe = universe;
+		this.pairs = new ConcurrentHashMap<String, Pair>();
+	}
+
+
+	// Commands
+	/**
+	 * Forgets the returns of all pairs, needed after series in the universe have been replaced
+	 */
+	public void clear(){
+		this.pairs.clear();
+	}
+
+	/**
+	 * Calculates the abnormal returns of one event
+	 * @param comp The company
+	 * @param market The market
+	 * @param day The epoch day of the event
+	 * @param window The windows
+	 * @return The abnormal returns
+	 * @throws IllegalArgumentException If the company or market isn't in the universe
+	 * @throws ArithmeticException If the series don't cover the windows or there is no shared trading day within
+	 * 			MAX_EVENT_SHIFT days from the event
+	 */
+	public EventResult query(String comp, String market, int day, EventWindow window){
+		Pair pair = this.pair(comp, market);
+		TradingCalendar calendar = pair.calendar;
+		double[] y = pair.returns.getColumn(0);
+		double[] x = pair.returns.getColumn(1);
+
+		// Return row r ends on trading day r+1
+		int event = calendar.ceilingIndex(day);
+		if(event >= calendar.size() || calendar.getDay(event) - day > MAX_EVENT_SHIFT){
+			// A hole in the data, a later day would be reported as the event
+			throw new ArithmeticException("No shared trading day of " + comp + " within " + MAX_EVENT_SHIFT + " days from " + day);
+		}
+		int firstRow = event + window.getEstimationStart() - 1;
+		int lastRow = event + window.getEventEnd() - 1;
+		if(firstRow < 0 || lastRow >= pair.returns.rows()){
+			throw new ArithmeticException("Not enough shared trading days for " + comp + " on " + day);
+		}
+
+		// Estimation window
+		int n = window.getEstimationLength();
+		double meanX = Kernels.mean(x, firstRow, n);
+		double meanY = Kernels.mean(y, firstRow, n);
+		double sxx = Kernels.centeredSumOfSquares(x, firstRow, meanX, n);
+		double sxy = Kernels.centeredDot(x, firstRow, meanX, y, firstRow, meanY, n);
+		double alpha;
+		double beta;
+		// Degrees of freedom of the variance of the abnormal returns
+		int df;
+		switch(window.getModel()){
+		case MARKET_ADJUSTED:
+			alpha = 0;
+			beta = 1;
+			df = n - 1;
+			break;
+		case MEAN_ADJUSTED:
+			alpha = meanY;
+			beta = 0;
+			df = n - 1;
+			break;
+		default:
+			beta = sxy / sxx;
+			alpha = meanY - beta * meanX;
+			df = n - 2;
+		}
+
+		// The variance is summed over the abnormal returns themselves, subtracting sums of squares loses the
+		// precision when the company follows the market closely
+		double[] estimationAbnormal = new double[n];
+		Kernels.abnormal(y, firstRow, x, firstRow, alpha, beta, estimationAbnormal, 0, n);
+		// Only the abnormal returns of the market adjusted model don't have a mean of 0
+		double meanAbnormal = window.getModel() == EventWindow.Model.MARKET_ADJUSTED ? Kernels.mean(estimationAbnormal, 0, n) : 0;
+		double variance = Kernels.centeredSumOfSquares(estimationAbnormal, 0, meanAbnormal, n) / df;
+
+		// Event window
+		int days = window.getEventLength();
+		int eventRow = event + window.getEventStart() - 1;
+		double[] actual = new double[days];
+		double[] marketReturns = new double[days];
+		double[] expected = new double[days];
+		System.arraycopy(y, eventRow, actual, 0, days);
+		System.arraycopy(x, eventRow, marketReturns, 0, days);
+		Kernels.expected(marketReturns, 0, alpha, beta, expected, 0, days);
+		return new EventResult(comp, market, calendar.getDay(event), window, alpha, beta, variance, n, meanX, sxx, actual, marketReturns, expected, estimationAbnormal);
+	}
+
+	/**
+	 * Calculates the abnormal returns of many events in parallel, event i is comps[i] on markets[i] on days[i]
+	 * @param comps The companies
+	 * @param markets The markets
+	 * @param days The epoch days of the events
+	 * @param window The windows
+	 * @return The abnormal returns in the order of the events, null for events which can't be calculated
+	 */
+	public EventResult[] query(String[] comps, String[] markets, int[] days, EventWindow window){
+		EventResult[] results = new EventResult[days.length];
+		IntStream.range(0, days.length).parallel().forEach(i -> {
+			try{
+				results[i] = this.query(comps[i], markets[i], days[i], window);
+			}
+			catch(IllegalArgumentException | ArithmeticException e){
+				results[i] = null;
+			}
+		});
+		return results;
+	}
+
+
+	// Queries
+	private Pair pair(String comp, String market){
+		return this.pairs.computeIfAbsent(comp + ";" + market, key -> {
+			PriceSeries c = this.universe.get(comp);
+			PriceSeries m = this.universe.get(market);
+			if(c == null || m == null){
+				throw new IllegalArgumentException((c == null ? comp : market) + " is not in the universe");
+			}
+			return new Pair(c, m);
+		});
+	}
+
+	/**
+	 * The shared trading days of a company and market with the returns on them
+	 */
+	private static class Pair {
+		final TradingCalendar calendar;
+		final ReturnMatrix returns;
+
+		Pair(PriceSeries comp, PriceSeries market){
+			this.calendar = new TradingCalendar(comp, market);
+			this.returns = ReturnMatrix.of(this.calendar, 0, this.calendar.size() - 1, comp, market);
+		}
+	}
+}
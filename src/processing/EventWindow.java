@@ -0,0 +1,117 @@
+package processing;
+
+/**
+ * The windows of an event study, in trading days relative to the event day (day 0, the first trading day on or after the event).
+ * The model is estimated on the estimation window, the abnormal returns are calculated over the event window.
+ * @author Aeilko Bos
+ */
+public class EventWindow {
+	/**
+	 * Models of the normal return of a company
+	 */
+	public enum Model {
+		/**
+		 * alpha + beta * market return, estimated with OLS
+		 */
+		MARKET_MODEL,
+		/**
+		 * The market return
+		 */
+		MARKET_ADJUSTED,
+		/**
+		 * The mean return of the company in the estimation window
+		 */
+		MEAN_ADJUSTED
+	}
+
+	// Estimation window
+	private final int estimationStart;
+	private final int estimationEnd;
+	// Event window
+	private final int eventStart;
+	private final int eventEnd;
+	// Model of the normal return
+	private final Model model;
+
+
+	// Constructor
+	/**
+	 * @param estimationStart First day of the estimation window, like -250
+	 * @param estimationEnd Last day of the estimation window, like -11
+	 * @param eventStart First day of the event window, like -5
+	 * @param eventEnd Last day of the event window, like 5
+	 * @param model Model of the normal return
+	 * @throws IllegalArgumentException If a window is empty or the estimation window doesn't end before the event window
+	 */
+	public EventWindow(int estimationStart, int estimationEnd, int eventStart, int eventEnd, Model model){
+		if(estimationStart > estimationEnd || eventStart > eventEnd || estimationEnd >= eventStart){
+			throw new IllegalArgumentException("Invalid windows [" + estimationStart + ", " + estimationEnd + "] and [" + eventStart + ", " + eventEnd + "]");
+		}
+		this.estimationStart = estimationStart;
+		this.estimationEnd = estimationEnd;
+		this.eventStart = eventStart;
+		this.eventEnd = eventEnd;
+		this.model = model;
+	}
+
+	/**
+	 * Market model with the estimation window of the given number of days directly before the event window
+	 * @param before Number of days before the event day in the event window
+	 * @param after Number of days after the event day in the event window
+	 * @param estimationDays Number of days in the estimation window
+	 */
+	public EventWindow(int before, int after, int estimationDays){
+		this(-before - estimationDays, -before - 1, -before, after, Model.MARKET_MODEL);
+	}
+
+
+	// Queries
+	/**
+	 * @return First day of the estimation window
+	 */
+	public int getEstimationStart(){
+		return this.estimationStart;
+	}
+
+	/**
+	 * @return Last day of the estimation window
+	 */
+	public int getEstimationEnd(){
+		return this.estimationEnd;
+	}
+
+	/**
+	 * @return First day of the event window
+	 */
+	public int getEventStart(){
+		return this.eventStart;
+	}
+
+	/**
+	 * @return Last day of the event window
+	 */
+	public int getEventEnd(){
+		return this.eventEnd;
+	}
+
+	/**
+	 * @return Model of the normal return
+	 */
+	public Model getModel(){
+		return this.model;
+	}
+
+	/**
+	 * @return The number of days in the event window
+	 */
+	public int getEventLength(){
+		return this.eventEnd - this.eventStart + 1;
+	}
+
+	/**
+	 * @return The number of days in the estimation window
+	 */
+	public int getEstimationLength(){
+		return this.estimationEnd - this.estimationStart + 1;
+	}
+}
@@ -0,0 +1,122 @@
+package processing;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on longs: a number is stored as a whole number of units of 10^-SCALE.
+ * Every operation is rounded half up to a unit, so results are exactly reproducible and always have SCALE decimals.
+ * Products and quotients are calculated in 128 bits when they don't fit in a long.
+ * @author Aeilko Bos
+ */
+public class FixedNumeric implements Numeric<Long> {
+	// Number of decimals
+	public static final int SCALE = 8;
+	// Units in one
+	private static final long ONE = 100000000L;
+	private static final BigInteger BIG_ONE = BigInteger.valueOf(ONE);
+
+	@Override
+	public Long valueOf(double value){
+		// Below 10^7 units are more than an ulp apart, so a unit which gives the double back is its shortest decimal
+		if(Math.abs(value) < 1e7){
+			long units = Math.round(value * ONE);
+			if(units / (double) ONE == value){
+				return units;
+			}
+		}
+		return this.valueOf(BigDecimal.valueOf(value));
+	}
+
+	@Override
+	public Long valueOf(BigDecimal value){
+		return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	@Override
+	public Long valueOf(long value){
+		return Math.multiplyExact(value, ONE);
+	}
+
+	@Override
+	public Long add(Long a, Long b){
+		return Math.addExact(a, b);
+	}
+
+	@Override
+	public Long subtract(Long a, Long b){
+		return Math.subtractExact(a, b);
+	}
+
+	@Override
+	public Long multiply(Long a, Long b){
+		long x = a;
+		long y = b;
+		long high = Math.multiplyHigh(x, y);
+		long low = x * y;
+		if(high == (low >> 63)){
+			return FixedNumeric.divideHalfUp(low, ONE);
+		}
+		return FixedNumeric.divideHalfUp(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)), BIG_ONE);
+	}
+
+	@Override
+	public Long divide(Long a, Long b){
+		long x = a;
+		long y = b;
+		if(y == 0){
+			throw new ArithmeticException("Division by zero");
+		}
+		long high = Math.multiplyHigh(x, ONE);
+		long low = x * ONE;
+		if(high == (low >> 63)){
+			return FixedNumeric.divideHalfUp(low, y);
+		}
+		return FixedNumeric.divideHalfUp(BigInteger.valueOf(x).multiply(BIG_ONE), BigInteger.valueOf(y));
+	}
+
+	@Override
+	public double toDouble(Long value){
+		return (double) value / ONE;
+	}
+
+	@Override
+	public String toString(Long value){
+		long v = value;
+		StringBuilder s = new StringBuilder(24);
+		if(v < 0){
+			s.append('-');
+		}
+		// Works for Long.MIN_VALUE as well, the remainder of an unsigned division
+		long whole = Long.divideUnsigned(Math.abs(v), ONE);
+		long fraction = Long.remainderUnsigned(Math.abs(v), ONE);
+		s.append(Long.toUnsignedString(whole)).append('.');
+		String digits = Long.toString(fraction);
+		for(int i = digits.length(); i < SCALE; i++){
+			s.append('0');
+		}
+		return s.append(digits).toString();
+	}
+
+	/**
+	 * @return n / d rounded half up (away from zero)
+	 */
+	private static long divideHalfUp(long n, long d){
+		long q = n / d;
+		long r = n % d;
+		if(Math.abs(r) >= Math.abs(d) - Math.abs(r)){
+			q += (n < 0) == (d < 0) ? 1 : -1;
+		}
+		return q;
+	}
+
+	private static long divideHalfUp(BigInteger n, BigInteger d){
+		BigInteger[] qr = n.divideAndRemainder(d);
+		BigInteger q = qr[0];
+		if(qr[1].abs().shiftLeft(1).compareTo(d.abs()) >= 0){
+			q = n.signum() == d.signum() ? q.add(BigInteger.ONE) : q.subtract(BigInteger.ONE);
+		}
+		return q.longValueExact();
+	}
+}
@@ -0,0 +1,134 @@
+package processing;
+
+/**
+ * Loops over primitive columns used by the regressions and event windows.
+ * The loops use the Vector API (VectorKernels) when the module jdk.incubator.vector is loaded
+ * (java --add-modules jdk.incubator.vector) and VectorKernels was compiled, see src-vector. Otherwise the scalar
+ * loops of ScalarKernels are used. Sums can differ in the last digits between both, because the vector loops add
+ * in another order.
+ * Ranges are given like System.arraycopy: an offset per array and a length.
+ * @author Aeilko Bos
+ */
+public class Kernels {
+	// The implementation of the kernels, chosen once
+	private static final ScalarKernels IMPL = Kernels.load();
+
+	private Kernels(){	}
+
+
+	// Commands
+	/**
+	 * Calculates the simple returns of consecutive prices: out[i] = (p[i+1] - p[i]) / p[i]
+	 * @param prices The prices
+	 * @param from Index of the first price
+	 * @param out The returns
+	 * @param outFrom Index of the first return
+	 * @param length Number of returns, length+1 prices are read
+	 */
+	public static void simpleReturns(double[] prices, int from, double[] out, int outFrom, int length){
+		IMPL.simpleReturns(prices, from, out, outFrom, length);
+	}
+
+	/**
+	 * Calculates the abnormal returns of a market model: out[i] = y[i] - (alpha + beta * x[i])
+	 * @param y The actual returns
+	 * @param yFrom Index of the first actual return
+	 * @param x The market returns
+	 * @param xFrom Index of the first market return
+	 * @param alpha The intercept
+	 * @param beta The slope
+	 * @param out The abnormal returns
+	 * @param outFrom Index of the first abnormal return
+	 * @param length Number of returns
+	 */
+	public static void abnormal(double[] y, int yFrom, double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		IMPL.abnormal(y, yFrom, x, xFrom, alpha, beta, out, outFrom, length);
+	}
+
+	/**
+	 * Calculates the expected returns of a market model: out[i] = alpha + beta * x[i]
+	 */
+	public static void expected(double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		IMPL.expected(x, xFrom, alpha, beta, out, outFrom, length);
+	}
+
+	/**
+	 * @return VectorKernels if the Vector API is loaded and VectorKernels was compiled, ScalarKernels otherwise
+	 */
+	private static ScalarKernels load(){
+		if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+			try{
+				return (ScalarKernels) Class.forName("processing.VectorKernels").getDeclaredConstructor().newInstance();
+			}
+			catch(ReflectiveOperationException | LinkageError e){
+				System.err.println("VectorKernels kan niet geladen worden, de scalaire kernels worden gebruikt");
+			}
+		}
+		return new ScalarKernels();
+	}
+
+
+	// Queries
+	/**
+	 * @return Whether the kernels use the Vector API
+	 */
+	public static boolean isVectorized(){
+		return IMPL.isVectorized();
+	}
+
+	/**
+	 * @return The sum of a[from] up to a[from+length-1]
+	 */
+	public static double sum(double[] a, int from, int length){
+		return IMPL.sum(a, from, length);
+	}
+
+	/**
+	 * @return The mean of a[from] up to a[from+length-1], NaN if length is 0
+	 */
+	public static double mean(double[] a, int from, int length){
+		return Kernels.sum(a, from, length) / length;
+	}
+
+	/**
+	 * @return The dot product of the ranges of a and b
+	 */
+	public static double dot(double[] a, int aFrom, double[] b, int bFrom, int length){
+		return IMPL.dot(a, aFrom, b, bFrom, length);
+	}
+
+	/**
+	 * @return The sum of the squares of the range of a
+	 */
+	public static double sumOfSquares(double[] a, int from, int length){
+		return Kernels.dot(a, from, a, from, length);
+	}
+
+	/**
+	 * @return The sum of the products of the deviations from the means: sum((a[i] - meanA) * (b[i] - meanB))
+	 */
+	public static double centeredDot(double[] a, int aFrom, double meanA, double[] b, int bFrom, double meanB, int length){
+		return IMPL.centeredDot(a, aFrom, meanA, b, bFrom, meanB, length);
+	}
+
+	/**
+	 * @return The sum of the squared deviations from the mean: sum((a[i] - mean)^2)
+	 */
+	public static double centeredSumOfSquares(double[] a, int from, double mean, int length){
+		return Kernels.centeredDot(a, from, mean, a, from, mean, length);
+	}
+
+	/**
+	 * @param y The dependent values
+	 * @param yFrom Index of the first dependent value
+	 * @param x The independent values
+	 * @param xFrom Index of the first independent value
+	 * @param length Number of points
+	 * @return The slope of the least squares line of y on x
+	 */
+	public static double slope(double[] y, int yFrom, double[] x, int xFrom, int length){
+		double meanX = Kernels.mean(x, xFrom, length);
+		double meanY = Kernels.mean(y, yFrom, length);
+		return Kernels.centeredDot(x, xFrom, meanX, y, yFrom, meanY, length) / Kernels.centeredSumOfSquares(x, xFrom, meanX, length);
+	}
+}
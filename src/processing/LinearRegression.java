@@ -39,6 +39,10 @@ public class LinearRegression {
 	private BigDecimal rss;
 	private BigDecimal ssr;
 	private BigDecimal fit;
+	private BigDecimal R2;
+	private BigDecimal svar;
+	private BigDecimal svar0;
+	private BigDecimal svar1;
 	
 	
 	// Constructor
@@ -75,6 +79,10 @@ public class LinearRegression {
 		this.rss = new BigDecimal(0);
 		this.ssr = new BigDecimal(0);
 		this.fit = new BigDecimal(0);
+		this.R2 = new BigDecimal(0);
+		this.svar = new BigDecimal(0);
+		this.svar0 = new BigDecimal(0);
+		this.svar1 = new BigDecimal(0);
 	}
 	
 	/**
@@ -113,17 +121,22 @@ public class LinearRegression {
         //System.out.println("X\t\t\t= " + beta0);
         //System.out.println("f(x)\t\t\t= " + beta1 + "x + " + beta0);
         
-        /*this.df = this.maxDays-2;
-        for(int i = 0; i < this.maxDays; i++){
-        	this.fit = beta1.multiply(new BigDecimal(x[i])).add(beta0);
-        	this.rss = rss.add(fit.subtract(y[i]).multiply(fit.subtract(y[i])));
-        	this.ssr = ssr.add(fit.subtract(barY).multiply(fit.subtract(barY)));
+        // Residual statistics, need at least three points
+        this.df = this.maxPoints-2;
+        if(this.df > 0){
+	        for(int i = 0; i < this.maxPoints; i++){
+	        	this.fit = beta1.multiply(x[i]).add(beta0);
+	        	this.rss = rss.add(fit.subtract(y[i]).multiply(fit.subtract(y[i])));
+	        	this.ssr = ssr.add(fit.subtract(barY).multiply(fit.subtract(barY)));
+	        }
+	        
+	        if(barYY.signum() != 0){
+	        	this.R2 = ssr.divide(barYY, mc);
+	        }
+	        this.svar = rss.divide(new BigDecimal(df), mc);
+	        this.svar1 = svar.divide(barXX, mc);
+	        this.svar0 = svar.divide(new BigDecimal(maxPoints), mc).add(barX.multiply(barX).multiply(svar1));
         }
-        
-        BigDecimal R2 = ssr.divide(barYY, mc);
-        BigDecimal svar = rss.divide(new BigDecimal(df), mc);
-        BigDecimal svar1 = svar.divide(barXX, mc);
-        BigDecimal svar0 = svar.divide(new BigDecimal(maxDays), mc).add(barX.multiply(barX).multiply(svar1));*/
 	}
 	
 	
@@ -141,4 +154,39 @@ public class LinearRegression {
 	public BigDecimal getX(){
 		return this.beta0;
 	}
+	
+	/**
+	 * @return The coefficient of determination
+	 */
+	public BigDecimal getR2(){
+		return this.R2;
+	}
+	
+	/**
+	 * @return The residual sum of squares
+	 */
+	public BigDecimal getRSS(){
+		return this.rss;
+	}
+	
+	/**
+	 * @return The variance of the residuals, with n-2 degrees of freedom
+	 */
+	public BigDecimal getResidualVariance(){
+		return this.svar;
+	}
+	
+	/**
+	 * @return The standard error of the Y value (slope)
+	 */
+	public BigDecimal getYStdErr(){
+		return this.svar1.sqrt(mc);
+	}
+	
+	/**
+	 * @return The standard error of the X value (intercept)
+	 */
+	public BigDecimal getXStdErr(){
+		return this.svar0.sqrt(mc);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package processing;
+
+/**
+ * Solver for small dense systems of linear equations, using Gaussian elimination with partial pivoting.
+ * Meant for the normal equations of regressions with a handful of factors.
+ * @author Aeilko Bos
+ */
+public class LinearSolver {
+
+	private LinearSolver(){	}
+
+
+	// Queries
+	/**
+	 * Solves a * x = b
+	 * @param a Square matrix, isn't changed
+	 * @param b Right hand side, isn't changed
+	 * @return x
+	 * @throws ArithmeticException If the matrix is singular
+	 */
+	public static double[] solve(double[][] a, double[] b){
+		int n = b.length;
+		double[][] m = new double[n][n+1];
+		for(int i = 0; i < n; i++){
+			System.arraycopy(a[i], 0, m[i], 0, n);
+			m[i][n] = b[i];
+		}
+		LinearSolver.eliminate(m, n);
+
+		double[] x = new double[n];
+		for(int i = n-1; i >= 0; i--){
+			double sum = m[i][n];
+			for(int j = i+1; j < n; j++){
+				sum -= m[i][j] * x[j];
+			}
+			x[i] = sum / m[i][i];
+		}
+		return x;
+	}
+
+	/**
+	 * @param a Square matrix, isn't changed
+	 * @return The inverse of a
+	 * @throws ArithmeticException If the matrix is singular
+	 */
+	public static double[][] invert(double[][] a){
+		int n = a.length;
+		double[][] inverse = new double[n][];
+		for(int j = 0; j < n; j++){
+			double[] unit = new double[n];
+			unit[j] = 1;
+			double[] column = LinearSolver.solve(a, unit);
+			for(int i = 0; i < n; i++){
+				if(inverse[i] == null){
+					inverse[i] = new double[n];
+				}
+				inverse[i][j] = column[i];
+			}
+		}
+		return inverse;
+	}
+
+	/**
+	 * Brings the augmented matrix m (n x n+1) in upper triangular form
+	 */
+	private static void eliminate(double[][] m, int n){
+		// Pivots smaller than this (relative to the largest value) are considered zero
+		double scale = 0;
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				scale = Math.max(scale, Math.abs(m[i][j]));
+			}
+		}
+		double epsilon = scale * 1e-12;
+
+		for(int col = 0; col < n; col++){
+			int pivot = col;
+			for(int i = col+1; i < n; i++){
+				if(Math.abs(m[i][col]) > Math.abs(m[pivot][col])){
+					pivot = i;
+				}
+			}
+			if(Math.abs(m[pivot][col]) <= epsilon){
+				throw new ArithmeticException("Singular matrix");
+			}
+			double[] tmp = m[pivot];
+			m[pivot] = m[col];
+			m[col] = tmp;
+
+			for(int i = col+1; i < n; i++){
+				double f = m[i][col] / m[col][col];
+				if(f != 0){
+					for(int j = col; j <= n; j++){
+						m[i][j] -= f * m[col][j];
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package processing;
+
+/**
+ * Ordinary least squares regression with an intercept and one or more factors: y = b0 + b1*x1 + ... + bk*xk.
+ * The factors are centered before the normal equations are solved, which keeps the system well conditioned.
+ * @author Aeilko Bos
+ */
+public class MultiFactorRegression {
+	// Number of points
+	private final int n;
+	// Intercept
+	private final double intercept;
+	// Coefficient per factor
+	private final double[] coefficients;
+	// Standard error per factor
+	private final double[] stdErr;
+	// Coefficient of determination
+	private final double R2;
+	// Residual variance
+	private final double svar;
+
+
+	// Constructor
+	/**
+	 * Fits the regression
+	 * @param y The dependent values
+	 * @param factors The values of every factor
+	 * @param from The first point
+	 * @param to The point after the last point
+	 * @throws ArithmeticException If the factors are linearly dependent
+	 */
+	public MultiFactorRegression(double[] y, double[][] factors, int from, int to){
+		int k = factors.length;
+		this.n = to - from;
+
+		// Means
+		double meanY = 0;
+		double[] mean = new double[k];
+		for(int t = from; t < to; t++){
+			meanY += y[t];
+			for(int j = 0; j < k; j++){
+				mean[j] += factors[j][t];
+			}
+		}
+		meanY /= this.n;
+		for(int j = 0; j < k; j++){
+			mean[j] /= this.n;
+		}
+
+		// Normal equations on the centered values
+		double[][] xx = new double[k][k];
+		double[] xy = new double[k];
+		double yy = 0;
+		for(int t = from; t < to; t++){
+			double dy = y[t] - meanY;
+			yy += dy * dy;
+			for(int i = 0; i < k; i++){
+				double di = factors[i][t] - mean[i];
+				xy[i] += di * dy;
+				for(int j = 0; j <= i; j++){
+					xx[i][j] += di * (factors[j][t] - mean[j]);
+				}
+			}
+		}
+		for(int i = 0; i < k; i++){
+			for(int j = i+1; j < k; j++){
+				xx[i][j] = xx[j][i];
+			}
+		}
+
+		this.coefficients = LinearSolver.solve(xx, xy);
+		double b0 = meanY;
+		double ssr = 0;
+		for(int j = 0; j < k; j++){
+			b0 -= this.coefficients[j] * mean[j];
+			ssr += this.coefficients[j] * xy[j];
+		}
+		this.intercept = b0;
+		double rss = Math.max(yy - ssr, 0);
+		this.R2 = yy == 0 ? 0 : ssr / yy;
+		this.svar = this.n > k+1 ? rss / (this.n - k - 1) : Double.NaN;
+
+		double[][] inverse = LinearSolver.invert(xx);
+		this.stdErr = new double[k];
+		for(int j = 0; j < k; j++){
+			this.stdErr[j] = Math.sqrt(this.svar * inverse[j][j]);
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of points
+	 */
+	public int getCount(){
+		return this.n;
+	}
+
+	/**
+	 * @return The intercept (b0)
+	 */
+	public double getIntercept(){
+		return this.intercept;
+	}
+
+	/**
+	 * @param j The factor (0 based)
+	 * @return The coefficient of the factor
+	 */
+	public double getCoefficient(int j){
+		return this.coefficients[j];
+	}
+
+	/**
+	 * @param j The factor (0 based)
+	 * @return The standard error of the coefficient of the factor
+	 */
+	public double getStdErr(int j){
+		return this.stdErr[j];
+	}
+
+	/**
+	 * @return The sum of all factor coefficients
+	 */
+	public double getCoefficientSum(){
+		double sum = 0;
+		for(double c: this.coefficients){
+			sum += c;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return The coefficient of determination
+	 */
+	public double getR2(){
+		return this.R2;
+	}
+
+	/**
+	 * @return The variance of the residuals, with n-k-1 degrees of freedom
+	 */
+	public double getResidualVariance(){
+		return this.svar;
+	}
+}
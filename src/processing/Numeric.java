@@ -0,0 +1,57 @@
+package processing;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmetic on one representation of decimal numbers, so a calculation can be written once and run with
+ * BigDecimals, doubles or fixed-point longs.
+ * @param <T> The representation of a number
+ * @author Aeilko Bos
+ */
+public interface Numeric<T> {
+	/**
+	 * @return The given double, using its shortest decimal representation
+	 */
+	public T valueOf(double value);
+
+	/**
+	 * @return The given decimal
+	 */
+	public T valueOf(BigDecimal value);
+
+	/**
+	 * @return The given integer
+	 */
+	public T valueOf(long value);
+
+	/**
+	 * @return a + b
+	 */
+	public T add(T a, T b);
+
+	/**
+	 * @return a - b
+	 */
+	public T subtract(T a, T b);
+
+	/**
+	 * @return a * b
+	 */
+	public T multiply(T a, T b);
+
+	/**
+	 * @return a / b
+	 * @throws ArithmeticException If b is zero
+	 */
+	public T divide(T a, T b);
+
+	/**
+	 * @return The given number as a double
+	 */
+	public double toDouble(T value);
+
+	/**
+	 * @return The given number as it is written in the results
+	 */
+	public String toString(T value);
+}
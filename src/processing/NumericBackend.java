@@ -0,0 +1,36 @@
+package processing;
+
+/**
+ * The available representations of decimal numbers in the CAPM calculation.
+ * @author Aeilko Bos
+ */
+public enum NumericBackend {
+	/**
+	 * BigDecimals rounded to Settings.mc on division, the results are the same as they have always been
+	 */
+	BIG_DECIMAL(new BigDecimalNumeric()),
+	/**
+	 * Doubles, the fastest but rounded on every operation in binary
+	 */
+	DOUBLE(new DoubleNumeric()),
+	/**
+	 * Longs in units of 10^-8, nearly as fast as doubles and exactly reproducible
+	 */
+	FIXED(new FixedNumeric());
+
+	// The arithmetic
+	private final Numeric<?> numeric;
+
+	private NumericBackend(Numeric<?> numeric){
+		this.numeric = numeric;
+	}
+
+
+	// Queries
+	/**
+	 * @return The arithmetic of this backend
+	 */
+	public Numeric<?> get(){
+		return this.numeric;
+	}
+}
@@ -0,0 +1,103 @@
+package processing;
+
+import stockdata.PriceSeries;
+import stockdata.TradingCalendar;
+
+/**
+ * Daily returns of several series aligned on their shared trading days, stored column by column in primitive arrays.
+ * Row r holds the returns of every series from one shared trading day to the next one.
+ * @author Aeilko Bos
+ */
+public class ReturnMatrix {
+	// The epoch day at the end of every return
+	private final int[] days;
+	// The returns per series
+	private final double[][] columns;
+	// Number of rows
+	private final int rows;
+
+
+	// Constructor
+	/**
+	 * Creates a matrix of the given returns
+	 * @param days The epoch day of every row
+	 * @param columns The returns per series, all at least as long as days
+	 */
+	public ReturnMatrix(int[] days, double[][] columns){
+		this.days = days;
+		this.columns = columns;
+		this.rows = days.length;
+	}
+
+	/**
+	 * Calculates the returns on the adjusted closing prices of the given series on the trading days of the calendar
+	 * @param calendar The calendar of the series
+	 * @param first Index of the first trading day in the calendar, the first return ends on the day after it
+	 * @param last Index of the last trading day in the calendar
+	 * @param series The series, in the same order as in the calendar
+	 * @return The matrix with one column per series
+	 */
+	public static ReturnMatrix of(TradingCalendar calendar, int first, int last, PriceSeries... series){
+		first = Math.max(first, 0);
+		int rows = Math.max(last - first, 0);
+		int[] days = new int[rows];
+		double[][] columns = new double[series.length][rows];
+		if(rows == 0){
+			return new ReturnMatrix(days, columns);
+		}
+		for(int r = 0; r < rows; r++){
+			days[r] = calendar.getDay(first + r + 1);
+		}
+		// Gather the prices on the shared trading days, the returns are then a single pass over a contiguous column
+		double[] prices = new double[rows + 1];
+		for(int s = 0; s < series.length; s++){
+			PriceSeries p = series[s];
+			for(int r = 0; r <= rows; r++){
+				prices[r] = p.getAdjClose(calendar.getRow(s, first + r));
+			}
+			Kernels.simpleReturns(prices, 0, columns[s], 0, rows);
+		}
+		return new ReturnMatrix(days, columns);
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of returns per series
+	 */
+	public int rows(){
+		return this.rows;
+	}
+
+	/**
+	 * @return The number of series
+	 */
+	public int columns(){
+		return this.columns.length;
+	}
+
+	/**
+	 * @param r The row
+	 * @return The epoch day at the end of the return
+	 */
+	public int getDay(int r){
+		return this.days[r];
+	}
+
+	/**
+	 * @param c The series
+	 * @param r The row
+	 * @return The return
+	 */
+	public double get(int c, int r){
+		return this.columns[c][r];
+	}
+
+	/**
+	 * @param c The series
+	 * @return The returns of the series, not a copy
+	 */
+	public double[] getColumn(int c){
+		return this.columns[c];
+	}
+}
@@ -0,0 +1,184 @@
+package processing;
+
+import java.time.LocalDate;
+
+import stockdata.EpochDay;
+import stockdata.PriceSeries;
+import stockdata.TradingCalendar;
+
+/**
+ * Daily BETA and ERM of a company and market pair over a sliding window of one year.
+ * The means and centered sums of the company and market returns are kept for the window in a StreamingRegression,
+ * moving the window one day adds and removes the returns which enter and leave it, so every day costs O(1) instead
+ * of a new regression. Centered sums don't lose precision when the returns are small compared to their mean.
+ * The values are calculated once for every calendar day in the requested interval, after which the BETA and
+ * ERM of any event in the interval is a single array lookup.
+ * The window of an event day is the same as in CAPM.calculateBETA (OLS), the BETA can differ from it in the last
+ * digits because the sums are updated instead of calculated in one pass.
+ * @author Aeilko Bos
+ */
+public class RollingBeta {
+	// First event day
+	private final int from;
+	// Slope of the company returns on the market returns, per event day
+	private final double[] beta;
+	// First opening of the market in the window, per event day
+	private final double[] startOpen;
+	// Opening of the market on or before the event, per event day
+	private final double[] eventOpen;
+	// Number of returns in the window, per event day
+	private final int[] count;
+
+	// The returns in the window
+	private final StreamingRegression window;
+
+
+	// Constructor
+	/**
+	 * Calculates the BETA and ERM for every day in the given interval
+	 * @param comp The series of the company, must contain the year before from
+	 * @param market The series of the market, must contain the year before from
+	 * @param from The first event day
+	 * @param to The last event day
+	 */
+	public RollingBeta(PriceSeries comp, PriceSeries market, int from, int to){
+		this.from = from;
+		int days = Math.max(to - from + 1, 0);
+		this.beta = new double[days];
+		this.startOpen = new double[days];
+		this.eventOpen = new double[days];
+		this.count = new int[days];
+		this.window = new StreamingRegression();
+
+		TradingCalendar calendar = new TradingCalendar(comp, market);
+		// Return i is from trading day i-1 to trading day i, the window holds the returns lo up to and including hi
+		int lo = 1;
+		int hi = 0;
+		LocalDate day = EpochDay.toLocalDate(from);
+		for(int d = 0; d < days; d++){
+			int event = from + d;
+			int start = (int) day.minusYears(1).toEpochDay();
+			int first = calendar.ceilingIndex(start);
+			int last = calendar.previous(event);
+
+			// Add the returns entering the window and remove the ones leaving it
+			if(hi < first){
+				this.window.reset();
+				lo = first+1;
+				hi = first;
+			}
+			while(hi < last){
+				hi++;
+				if(hi >= lo){
+					this.update(calendar, comp, market, hi, 1);
+				}
+			}
+			while(lo < first+1){
+				if(lo <= hi){
+					this.update(calendar, comp, market, lo, -1);
+				}
+				lo++;
+			}
+
+			this.count[d] = (int) this.window.getCount();
+			this.beta[d] = this.count[d] > 1 && this.window.getSumOfSquaresX() > 0 ? this.window.getSlope() : Double.NaN;
+
+			// ERM on the opening prices of the market itself
+			int startIndex = market.ceilingIndex(start);
+			int eventIndex = market.floorIndex(event);
+			boolean known = startIndex < market.size() && eventIndex >= 0;
+			this.startOpen[d] = known ? market.getOpen(startIndex) : Double.NaN;
+			this.eventOpen[d] = known ? market.getOpen(eventIndex) : Double.NaN;
+
+			day = day.plusDays(1);
+		}
+	}
+
+
+	// Commands
+	/**
+	 * Adds (sign = 1) or removes (sign = -1) the return ending on trading day i
+	 */
+	private void update(TradingCalendar calendar, PriceSeries comp, PriceSeries market, int i, int sign){
+		double lastComp = comp.getAdjClose(calendar.getRow(0, i-1));
+		double lastMarket = market.getAdjClose(calendar.getRow(1, i-1));
+		double y = (comp.getAdjClose(calendar.getRow(0, i)) - lastComp) / lastComp;
+		double x = (market.getAdjClose(calendar.getRow(1, i)) - lastMarket) / lastMarket;
+		if(sign > 0){
+			this.window.addPoint(x, y);
+		}
+		else{
+			this.window.removePoint(x, y);
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The first event day
+	 */
+	public int getFirstDay(){
+		return this.from;
+	}
+
+	/**
+	 * @return The last event day
+	 */
+	public int getLastDay(){
+		return this.from + this.beta.length - 1;
+	}
+
+	/**
+	 * @param day The event day
+	 * @return Whether the values of the given day have been calculated
+	 */
+	public boolean contains(int day){
+		return day >= this.from && day - this.from < this.beta.length;
+	}
+
+	/**
+	 * @param day The event day
+	 * @return The (unadjusted) BETA of the year before the given day, NaN if there are not enough returns
+	 * @require contains(day)
+	 */
+	public double getBeta(int day){
+		return this.beta[day - this.from];
+	}
+
+	/**
+	 * @param day The event day
+	 * @return The market return from the first opening of the year before the given day up to the given day, NaN
+	 * 			without market data
+	 * @require contains(day)
+	 */
+	public double getERM(int day){
+		return (this.getEventOpen(day) - this.getStartOpen(day)) / this.getStartOpen(day);
+	}
+
+	/**
+	 * @param day The event day
+	 * @return The first opening price of the market in the year before the given day, NaN without market data
+	 * @require contains(day)
+	 */
+	public double getStartOpen(int day){
+		return this.startOpen[day - this.from];
+	}
+
+	/**
+	 * @param day The event day
+	 * @return The opening price of the market on the last trading day on or before the given day, NaN without market data
+	 * @require contains(day)
+	 */
+	public double getEventOpen(int day){
+		return this.eventOpen[day - this.from];
+	}
+
+	/**
+	 * @param day The event day
+	 * @return The number of returns the BETA of the given day is based on
+	 * @require contains(day)
+	 */
+	public int getCount(int day){
+		return this.count[day - this.from];
+	}
+}
@@ -0,0 +1,85 @@
+package processing;
+
+/**
+ * Scalar implementation of the Kernels, used when the Vector API isn't available.
+ * The element-wise kernels are counted loops of arithmetic without branches or calls, which the JIT compiles to SIMD
+ * instructions. Reductions keep four independent partial sums, so the additions don't wait on each other; the JIT
+ * doesn't vectorize them itself because that would change the order of the floating point additions.
+ * VectorKernels overrides the kernels with explicit vector loops.
+ * @author Aeilko Bos
+ */
+class ScalarKernels {
+
+	// Commands
+	void simpleReturns(double[] prices, int from, double[] out, int outFrom, int length){
+		for(int i = 0; i < length; i++){
+			out[outFrom + i] = (prices[from + i + 1] - prices[from + i]) / prices[from + i];
+		}
+	}
+
+	void abnormal(double[] y, int yFrom, double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		for(int i = 0; i < length; i++){
+			out[outFrom + i] = y[yFrom + i] - (alpha + beta * x[xFrom + i]);
+		}
+	}
+
+	void expected(double[] x, int xFrom, double alpha, double beta, double[] out, int outFrom, int length){
+		for(int i = 0; i < length; i++){
+			out[outFrom + i] = alpha + beta * x[xFrom + i];
+		}
+	}
+
+
+	// Queries
+	double sum(double[] a, int from, int length){
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for(; i + 3 < length; i += 4){
+			s0 += a[from + i];
+			s1 += a[from + i + 1];
+			s2 += a[from + i + 2];
+			s3 += a[from + i + 3];
+		}
+		for(; i < length; i++){
+			s0 += a[from + i];
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	double dot(double[] a, int aFrom, double[] b, int bFrom, int length){
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for(; i + 3 < length; i += 4){
+			s0 += a[aFrom + i] * b[bFrom + i];
+			s1 += a[aFrom + i + 1] * b[bFrom + i + 1];
+			s2 += a[aFrom + i + 2] * b[bFrom + i + 2];
+			s3 += a[aFrom + i + 3] * b[bFrom + i + 3];
+		}
+		for(; i < length; i++){
+			s0 += a[aFrom + i] * b[bFrom + i];
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	double centeredDot(double[] a, int aFrom, double meanA, double[] b, int bFrom, double meanB, int length){
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for(; i + 3 < length; i += 4){
+			s0 += (a[aFrom + i] - meanA) * (b[bFrom + i] - meanB);
+			s1 += (a[aFrom + i + 1] - meanA) * (b[bFrom + i + 1] - meanB);
+			s2 += (a[aFrom + i + 2] - meanA) * (b[bFrom + i + 2] - meanB);
+			s3 += (a[aFrom + i + 3] - meanA) * (b[bFrom + i + 3] - meanB);
+		}
+		for(; i < length; i++){
+			s0 += (a[aFrom + i] - meanA) * (b[bFrom + i] - meanB);
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * @return Whether the kernels use the Vector API
+	 */
+	boolean isVectorized(){
+		return false;
+	}
+}
@@ -0,0 +1,231 @@
+package processing;
+
+import java.util.Arrays;
+
+/**
+ * Cross-sectional significance tests of the cumulative abnormal returns of an event study over a part of the event window.
+ * <ul>
+ * <li>Patell: the sum of the standardized CARs, using the variance of every event in its estimation window and the
+ * 		forecast error of the market model.</li>
+ * <li>BMP (Boehmer, Musumeci and Poulsen): a t-test on the standardized CARs, robust to event-induced variance.</li>
+ * <li>Sign: whether more CARs are positive than the half expected under the null hypothesis.</li>
+ * <li>Rank (Corrado, Cowan): ranks of the abnormal returns over the estimation and event window of every event,
+ * 		which doesn't assume normal returns.</li>
+ * </ul>
+ * All statistics are approximately standard normal under the null hypothesis of no abnormal return.
+ * @author Aeilko Bos
+ */
+public class SignificanceTests {
+	// Number of events
+	private final int count;
+	// Mean CAR
+	private final double meanCAR;
+	// The CAR of every event
+	private final double[] cars;
+	// The statistics
+	private final double patell;
+	private final double bmp;
+	private final double sign;
+	private final double rank;
+
+
+	// Constructor
+	/**
+	 * Tests the CARs of the given events from day from up to and including day to
+	 * @param window The windows of the events
+	 * @param results The events, null for events which failed
+	 * @param from The first day relative to the event, within the event window
+	 * @param to The last day relative to the event, within the event window
+	 */
+	public SignificanceTests(EventWindow window, EventResult[] results, int from, int to){
+		int n = 0;
+		for(EventResult r: results){
+			if(r != null){
+				n++;
+			}
+		}
+		int length = to - from + 1;
+		int estimation = window.getEstimationLength();
+		int days = estimation + window.getEventLength();
+		this.cars = new double[n];
+		double[] scars = new double[n];
+		double[] meanU = new double[days];
+		double patellSum = 0;
+		int positive = 0;
+
+		int e = 0;
+		for(EventResult r: results){
+			if(r == null){
+				continue;
+			}
+			double car = r.getCAR(from, to);
+			this.cars[e] = car;
+			if(car > 0){
+				positive++;
+			}
+
+			// Standardized CAR, with the forecast error of the market model
+			double s = Math.sqrt(r.getVariance());
+			int t = r.getEstimationCount();
+			double csar = 0;
+			for(int d = from; d <= to; d++){
+				double c = 1;
+				if(window.getModel() == EventWindow.Model.MARKET_MODEL){
+					double dm = r.getMarketReturn(d) - r.getEstimationMarketMean();
+					c = 1 + 1.0 / t + dm * dm / r.getEstimationMarketSxx();
+				}
+				csar += r.getAbnormal(d) / (s * Math.sqrt(c));
+			}
+			patellSum += csar / Math.sqrt(length * (t - 2.0) / (t - 4.0));
+			scars[e] = csar / Math.sqrt(length);
+
+			// Ranks over the estimation and the event window
+			double[] all = Arrays.copyOf(r.getEstimationAbnormal(), days);
+			for(int d = window.getEventStart(); d <= window.getEventEnd(); d++){
+				all[estimation + d - window.getEventStart()] = r.getAbnormal(d);
+			}
+			double[] sorted = all.clone();
+			Arrays.sort(sorted);
+			for(int i = 0; i < days; i++){
+				meanU[i] += SignificanceTests.rank(sorted, all[i]) / (days + 1) - 0.5;
+			}
+			e++;
+		}
+
+		this.count = n;
+		this.meanCAR = SignificanceTests.mean(this.cars);
+		this.patell = patellSum / Math.sqrt(n);
+		double meanSCAR = SignificanceTests.mean(scars);
+		this.bmp = meanSCAR / (SignificanceTests.stdDev(scars, meanSCAR) / Math.sqrt(n));
+		this.sign = (positive - n / 2.0) / Math.sqrt(n / 4.0);
+
+		double su = 0;
+		double sumU = 0;
+		for(int i = 0; i < days; i++){
+			meanU[i] /= n;
+			su += meanU[i] * meanU[i];
+		}
+		su = Math.sqrt(su / days);
+		for(int d = from; d <= to; d++){
+			sumU += meanU[estimation + d - window.getEventStart()];
+		}
+		this.rank = sumU / (Math.sqrt(length) * su);
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of events
+	 */
+	public int getCount(){
+		return this.count;
+	}
+
+	/**
+	 * @return The mean CAR
+	 */
+	public double getMeanCAR(){
+		return this.meanCAR;
+	}
+
+	/**
+	 * @return The CAR of every event, not a copy
+	 */
+	public double[] getCARs(){
+		return this.cars;
+	}
+
+	/**
+	 * @return The Patell Z statistic
+	 */
+	public double getPatell(){
+		return this.patell;
+	}
+
+	/**
+	 * @return The BMP t statistic
+	 */
+	public double getBMP(){
+		return this.bmp;
+	}
+
+	/**
+	 * @return The sign test Z statistic
+	 */
+	public double getSign(){
+		return this.sign;
+	}
+
+	/**
+	 * @return The rank test statistic
+	 */
+	public double getRank(){
+		return this.rank;
+	}
+
+	/**
+	 * @param z A standard normal statistic
+	 * @return The two-sided p-value
+	 */
+	public static double pValue(double z){
+		return SignificanceTests.erfc(Math.abs(z) / Math.sqrt(2));
+	}
+
+	/**
+	 * Complementary error function (Numerical Recipes erfcc, relative error below 1.2e-7)
+	 */
+	private static double erfc(double x){
+		double z = Math.abs(x);
+		double t = 1 / (1 + 0.5 * z);
+		double r = t * Math.exp(-z*z - 1.26551223 + t*(1.00002368 + t*(0.37409196 + t*(0.09678418 + t*(-0.18628806
+				+ t*(0.27886807 + t*(-1.13520398 + t*(1.48851587 + t*(-0.82215223 + t*0.17087277)))))))));
+		return x >= 0 ? r : 2 - r;
+	}
+
+	/**
+	 * @return The 1-based rank of the value in the sorted values, the mean rank when there are ties
+	 */
+	private static double rank(double[] sorted, double value){
+		int lo = 0;
+		int hi = sorted.length;
+		// First index with sorted[i] >= value
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] < value){
+				lo = mid + 1;
+			}
+			else{
+				hi = mid;
+			}
+		}
+		int first = lo;
+		hi = sorted.length;
+		// First index with sorted[i] > value
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] <= value){
+				lo = mid + 1;
+			}
+			else{
+				hi = mid;
+			}
+		}
+		return (first + lo + 1) / 2.0;
+	}
+
+	private static double mean(double[] values){
+		double sum = 0;
+		for(double v: values){
+			sum += v;
+		}
+		return sum / values.length;
+	}
+
+	private static double stdDev(double[] values, double mean){
+		double sum = 0;
+		for(double v: values){
+			sum += (v - mean) * (v - mean);
+		}
+		return Math.sqrt(sum / (values.length - 1));
+	}
+}
@@ -0,0 +1,176 @@
+package processing;
+
+/**
+ * Ordinary least squares regression which is updated one point at a time.
+ * Only running means and sums of squared deviations are kept (Welford's method), so no points are stored
+ * and adding a point doesn't allocate any objects. Points can be removed again, which RollingBeta uses to slide
+ * its window.
+ * @author Aeilko Bos
+ */
+public class StreamingRegression {
+
+	// Number of points
+	private long n;
+	// Running means
+	private double meanX;
+	private double meanY;
+	// Running sums of squared deviations from the mean
+	private double sxx;
+	private double syy;
+	private double sxy;
+
+
+	// Constructor
+	/**
+	 * Initializes an empty regression
+	 */
+	public StreamingRegression(){
+		this.reset();
+	}
+
+
+	// Commands
+	/**
+	 * Removes all points
+	 */
+	public void reset(){
+		this.n = 0;
+		this.meanX = 0;
+		this.meanY = 0;
+		this.sxx = 0;
+		this.syy = 0;
+		this.sxy = 0;
+	}
+
+	/**
+	 * Adds a point to the regression
+	 * @param x The x value
+	 * @param y The y value
+	 */
+	public void addPoint(double x, double y){
+		this.n++;
+		double dx = x - this.meanX;
+		double dy = y - this.meanY;
+		this.meanX += dx / this.n;
+		this.meanY += dy / this.n;
+		// Uses the deviation from the old and the new mean, which keeps the sums stable
+		this.sxx += dx * (x - this.meanX);
+		this.syy += dy * (y - this.meanY);
+		this.sxy += dx * (y - this.meanY);
+	}
+
+	/**
+	 * Removes a point which was added before, the reverse of addPoint
+	 * @param x The x value
+	 * @param y The y value
+	 */
+	public void removePoint(double x, double y){
+		if(this.n <= 1){
+			this.reset();
+			return;
+		}
+		// The reverse of adding: the deviation from the new and the old mean
+		double oldMeanX = this.meanX;
+		double oldMeanY = this.meanY;
+		this.n--;
+		this.meanX -= (x - this.meanX) / this.n;
+		this.meanY -= (y - this.meanY) / this.n;
+		this.sxx -= (x - this.meanX) * (x - oldMeanX);
+		this.syy -= (y - this.meanY) * (y - oldMeanY);
+		this.sxy -= (x - this.meanX) * (y - oldMeanY);
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of points
+	 */
+	public long getCount(){
+		return this.n;
+	}
+
+	/**
+	 * @return The slope of the regression line (beta1)
+	 */
+	public double getSlope(){
+		return this.sxy / this.sxx;
+	}
+
+	/**
+	 * @return The intercept of the regression line (beta0)
+	 */
+	public double getIntercept(){
+		return this.meanY - this.getSlope() * this.meanX;
+	}
+
+	/**
+	 * @return The coefficient of determination
+	 */
+	public double getR2(){
+		return (this.sxy * this.sxy) / (this.sxx * this.syy);
+	}
+
+	/**
+	 * @return The correlation between x and y
+	 */
+	public double getCorrelation(){
+		return this.sxy / Math.sqrt(this.sxx * this.syy);
+	}
+
+	/**
+	 * @return The residual sum of squares
+	 */
+	public double getRSS(){
+		return Math.max(this.syy - this.getSlope() * this.sxy, 0);
+	}
+
+	/**
+	 * @return The regression sum of squares
+	 */
+	public double getSSR(){
+		return this.getSlope() * this.sxy;
+	}
+
+	/**
+	 * @return The variance of the residuals, with n-2 degrees of freedom
+	 */
+	public double getResidualVariance(){
+		return this.getRSS() / (this.n - 2);
+	}
+
+	/**
+	 * @return The standard error of the slope
+	 */
+	public double getSlopeStdErr(){
+		return Math.sqrt(this.getResidualVariance() / this.sxx);
+	}
+
+	/**
+	 * @return The standard error of the intercept
+	 */
+	public double getInterceptStdErr(){
+		double svar = this.getResidualVariance();
+		return Math.sqrt(svar / this.n + this.meanX * this.meanX * svar / this.sxx);
+	}
+
+	/**
+	 * @return The sum of the squared deviations of the x values from their mean
+	 */
+	public double getSumOfSquaresX(){
+		return this.sxx;
+	}
+
+	/**
+	 * @return The mean of the x values
+	 */
+	public double getMeanX(){
+		return this.meanX;
+	}
+
+	/**
+	 * @return The mean of the y values
+	 */
+	public double getMeanY(){
+		return this.meanY;
+	}
+}
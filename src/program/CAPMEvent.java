@@ -0,0 +1,260 @@
+package program;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import processing.CAPM;
+import processing.Numeric;
+import processing.RollingBeta;
+import stockdata.Data;
+import stockdata.DataLoader;
+import stockdata.EpochDay;
+import stockdata.Metrics;
+import stockdata.PriceSeries;
+
+/**
+ * The stock data of one attack, loaded and ready for the CAPM calculation.
+ * Loading (I/O) and calculating (CPU) are separate steps, so a batch can load the next events while it calculates this one.
+ * @author Aeilko Bos
+ */
+public class CAPMEvent {
+	// Number of days in the event window, starting at the attack
+	public static final int EVENT_DAYS = 5;
+	// Names of the result fields
+	public static final String[] COLUMNS = CAPMEvent.columns();
+
+	// The handle of the company which has been attacked
+	private final String comp;
+	// The market on which the company is traded
+	private final String market;
+	// The date of the attack as given
+	private final String date;
+	// Epoch days of the start of the estimation year, the attack and the end of the event window
+	private final int startDay;
+	private final int attackDay;
+	private final int endDay;
+	// Company and market data of the estimation year (null when the event uses a rolling BETA), company data of the event window
+	private final Data compData;
+	private final Data marketData;
+	private final Data attackData;
+
+
+	// Constructor
+	private CAPMEvent(String comp, String market, String date, int startDay, int attackDay, int endDay, Data compData, Data marketData, Data attackData){
+		this.comp = comp;
+		this.market = market;
+		this.date = date;
+		this.startDay = startDay;
+		this.attackDay = attackDay;
+		this.endDay = endDay;
+		this.compData = compData;
+		this.marketData = marketData;
+		this.attackData = attackData;
+	}
+
+
+	// Commands
+	/**
+	 * Loads the stock data of the given attack and exports it to the data directory
+	 * @param comp The handle of the company which has been attacked
+	 * @param market The market on which the company is traded
+	 * @param date The date of the attack.
+	 * @param loader The source of the stock data
+	 * @return The loaded event
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws IOException If the stock data can't be loaded
+	 */
+	public static CAPMEvent load(String comp, String market, String date, DataLoader loader) throws IOException{
+		return CAPMEvent.load(comp, market, date, loader, null);
+	}
+	
+	/**
+	 * Loads the stock data of the given attack and exports it to the data directory.
+	 * When the rolling BETA contains the attack only the event window is loaded, the estimation year is in the rolling BETA.
+	 * @param comp The handle of the company which has been attacked
+	 * @param market The market on which the company is traded
+	 * @param date The date of the attack.
+	 * @param loader The source of the stock data
+	 * @param rolling The rolling BETA and ERM of the company and market, or null
+	 * @return The loaded event, to be calculated with the same rolling BETA
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws IOException If the stock data can't be loaded
+	 */
+	public static CAPMEvent load(String comp, String market, String date, DataLoader loader, RollingBeta rolling) throws IOException{
+		// Calculate all dates
+		int attackDay = EpochDay.parseDMY(date);
+		LocalDate attack = EpochDay.toLocalDate(attackDay);
+		LocalDate start = attack.minusYears(1);
+		LocalDate end = attack.plusDays(EVENT_DAYS);
+		int startDay = (int) start.toEpochDay();
+		int endDay = (int) end.toEpochDay();
+		
+		long loadStart = Metrics.start();
+		if(rolling != null && rolling.contains(attackDay)){
+			// Stock data over 5 days
+			Data attackData = loader.load(comp, 'd', attackDay, endDay);
+			if(Settings.exportCSV){
+				attackData.exportCSV("data/" + comp + "_" + attack.format(EpochDay.DMY) + "-" + end.format(EpochDay.DMY) + ".csv");
+			}
+			Metrics.stop(Metrics.Stage.LOAD, loadStart);
+			return new CAPMEvent(comp, market, date, startDay, attackDay, endDay, null, null, attackData);
+		}
+		
+		// Data of the year before the attack for BETA and ERM and over 5 days, the company is loaded once for both
+		Data[] windows = loader.loadWindows(comp, 'd', startDay, attackDay, endDay);
+		Data compData = windows[0];
+		Data attackData = windows[1];
+		Data marketData = loader.load(market, 'd', startDay, attackDay);
+		if(Settings.exportCSV){
+			compData.exportCSV("data/" + comp + "_" + start.format(EpochDay.DMY) + "-" + attack.format(EpochDay.DMY) + ".csv");
+			marketData.exportCSV("data/" + market + "_" + start.format(EpochDay.DMY) + "-" + attack.format(EpochDay.DMY) + ".csv");
+			attackData.exportCSV("data/" + comp + "_" + attack.format(EpochDay.DMY) + "-" + end.format(EpochDay.DMY) + ".csv");
+		}
+		Metrics.stop(Metrics.Stage.LOAD, loadStart);
+		
+		return new CAPMEvent(comp, market, date, startDay, attackDay, endDay, compData, marketData, attackData);
+	}
+
+	/**
+	 * Calculates the difference using CAPM with the numeric backend of the settings.
+	 * When a validation backend is set, the calculation is repeated with it and the divergence is recorded in NumericCheck.
+	 * @param rolling The rolling BETA and ERM of the company and market, or null to calculate them for this event, the
+	 * 			same as the event was loaded with
+	 * @return The result fields, see COLUMNS (company, market, date, BETA, ERM followed by ER, actual and difference
+	 * 			for every day), the fields of days on which the exchange is closed are empty
+	 * @throws IOException If there is no market data or risk free rate for the attack
+	 */
+	public String[] calculate(RollingBeta rolling) throws IOException{
+		// BETA only depends on the stock data, the backends start from the same value
+		long start = Metrics.start();
+		BigDecimal BETA;
+		if(rolling != null && rolling.contains(this.attackDay)){
+			BETA = CAPM.calculateBETA(rolling, this.attackDay);
+		}
+		else{
+			BETA = CAPM.calculateBETA(this.compData, this.marketData, this.attackDay);
+		}
+		Metrics.stop(Metrics.Stage.BETA, start);
+		
+		start = Metrics.start();
+		String[] result = this.calculate(Settings.numeric.get(), BETA, rolling);
+		Metrics.stop(Metrics.Stage.CAR, start);
+		if(Settings.validateNumeric != null){
+			String[] check = this.calculate(Settings.validateNumeric.get(), BETA, rolling);
+			NumericCheck.getInstance().compare(this.comp + " " + this.date, result, check);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the difference using CAPM with the given arithmetic
+	 * @param num The arithmetic
+	 * @param beta The BETA of the event
+	 * @param rolling The rolling BETA and ERM of the company and market, or null to calculate the ERM for this event
+	 * @return The result fields
+	 * @throws IOException If there is no market data or risk free rate for the attack
+	 */
+	private <T> String[] calculate(Numeric<T> num, BigDecimal beta, RollingBeta rolling) throws IOException{
+		// Save result
+		String[] result = new String[COLUMNS.length];
+		result[0] = this.comp;
+		result[1] = this.market;
+		result[2] = this.date;
+		
+		T BETA = num.valueOf(beta);
+		// Calculate ERM, from the first trading day of the year up to the last trading day before or on the attack
+		double startPrice;
+		double attackPrice;
+		if(rolling != null && rolling.contains(this.attackDay)){
+			startPrice = rolling.getStartOpen(this.attackDay);
+			attackPrice = rolling.getEventOpen(this.attackDay);
+		}
+		else{
+			PriceSeries marketSeries = this.marketData.getSeries();
+			int startIndex = marketSeries.ceilingIndex(this.startDay);
+			int attackIndex = marketSeries.floorIndex(this.attackDay);
+			startPrice = startIndex < marketSeries.size() ? marketSeries.getOpen(startIndex) : Double.NaN;
+			attackPrice = attackIndex >= 0 ? marketSeries.getOpen(attackIndex) : Double.NaN;
+		}
+		if(Double.isNaN(startPrice) || Double.isNaN(attackPrice)){
+			throw new IOException("Geen marktdata van " + this.market + " voor " + this.date);
+		}
+		T startOpen = num.valueOf(startPrice);
+		T attackOpen = num.valueOf(attackPrice);
+		T ERM = num.divide(num.subtract(attackOpen, startOpen), startOpen);
+		result[3] = num.toString(BETA);
+		result[4] = num.toString(ERM);
+		
+		
+		// Loop for 5 days
+		PriceSeries attackSeries = this.attackData.getSeries();
+		int field = 5;
+		for(int day = this.attackDay; day < this.endDay; day++){
+			// Skip days when the exchange is closed
+			int i = attackSeries.indexOf(day);
+			if(i < 0){
+				result[field++] = "";
+				result[field++] = "";
+				result[field++] = "";
+				continue;
+			}
+			
+			// Read actual data
+			T open = num.valueOf(attackSeries.getOpen(i));
+			T adjClose = num.valueOf(attackSeries.getAdjClose(i));
+			
+			// Calculate CAR data
+			T CAR = CAPM.calculateCAR(num, day, BETA, ERM);
+			
+			// Calculate difference
+			T meanDay = num.divide(num.subtract(adjClose, open), open);
+			
+			// Show results
+			result[field++] = num.toString(CAR);
+			result[field++] = num.toString(meanDay);
+			result[field++] = num.toString(num.subtract(meanDay, CAR));
+		}
+		
+		return result;
+	}
+
+
+	// Queries
+	private static String[] columns(){
+		String[] columns = new String[5 + 3 * EVENT_DAYS];
+		columns[0] = "company";
+		columns[1] = "market";
+		columns[2] = "date";
+		columns[3] = "beta";
+		columns[4] = "erm";
+		for(int d = 0; d < EVENT_DAYS; d++){
+			columns[5 + 3*d] = "er" + d;
+			columns[6 + 3*d] = "actual" + d;
+			columns[7 + 3*d] = "difference" + d;
+		}
+		return columns;
+	}
+
+	/**
+	 * @return The handle of the company which has been attacked
+	 */
+	public String getComp(){
+		return this.comp;
+	}
+
+	/**
+	 * @return The market on which the company is traded
+	 */
+	public String getMarket(){
+		return this.market;
+	}
+
+	/**
+	 * @return The date of the attack as given
+	 */
+	public String getDate(){
+		return this.date;
+	}
+}
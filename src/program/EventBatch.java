@@ -0,0 +1,300 @@
+package program;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.DateTimeException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import processing.BetaEstimator;
+import processing.RollingBeta;
+import stockdata.Data;
+import stockdata.DataLoader;
+import stockdata.EpochDay;
+import stockdata.Metrics;
+
+/**
+ * Runs the CAPM calculation of multiple events as a pipeline of three stages:
+ * loading (downloading and parsing the stock data), calculating and writing the results.
+ * Every stage has its own threads and the stages are connected by bounded queues, so the calculation of one event
+ * overlaps with the loading of the next ones and a slow stage holds back the stages before it instead of
+ * letting events pile up in memory.
+ * @author Aeilko Bos
+ */
+public class EventBatch {
+	// Number of threads loading events
+	private final int loadThreads;
+	// Number of threads calculating events
+	private final int calculateThreads;
+	// Capacity of the queues between the stages
+	private final int queueSize;
+	// The source of the stock data, shared by all events
+	private final DataLoader loader;
+
+
+	// Constructor
+	/**
+	 * @param parallelism Number of events which are loaded at the same time
+	 * @param loader The source of the stock data, shared by all events
+	 * @require parallelism > 0
+	 */
+	public EventBatch(int parallelism, DataLoader loader){
+		this(parallelism, Runtime.getRuntime().availableProcessors(), 2 * parallelism, loader);
+	}
+
+	/**
+	 * @param loadThreads Number of threads loading events, mostly waiting on the network
+	 * @param calculateThreads Number of threads calculating events
+	 * @param queueSize Capacity of the queues between the stages
+	 * @param loader The source of the stock data, shared by all events
+	 * @require loadThreads > 0 && calculateThreads > 0 && queueSize > 0
+	 */
+	public EventBatch(int loadThreads, int calculateThreads, int queueSize, DataLoader loader){
+		this.loadThreads = Math.max(loadThreads, 1);
+		this.calculateThreads = Math.max(calculateThreads, 1);
+		this.queueSize = Math.max(queueSize, 1);
+		this.loader = loader;
+	}
+
+
+	// Commands
+	/**
+	 * Calculates the results of the given events and writes them to the log in the order of the events.
+	 * Events which fail are reported on System.err and left out of the log.
+	 * @param events The events, every event is an array containing the company, the market and the date.
+	 * @param log The log the results are written to, in the result format of the settings.
+	 * @return The result lines in the order of the events, null for events which failed.
+	 */
+	public List<String> run(List<String[]> events, Log log){
+		Map<String, int[]> pairs = EventBatch.rollingPairs(events);
+		ConcurrentHashMap<String, CompletableFuture<RollingBeta>> rollings = new ConcurrentHashMap<String, CompletableFuture<RollingBeta>>();
+		BlockingQueue<Item> loaded = new ArrayBlockingQueue<Item>(this.queueSize);
+		BlockingQueue<Item> calculated = new ArrayBlockingQueue<Item>(this.queueSize);
+		// Events which are started but not written, results have to wait for earlier events before they are written
+		Semaphore window = new Semaphore(this.loadThreads + this.calculateThreads + 2 * this.queueSize);
+		int[] next = { 0 };
+		AtomicInteger loading = new AtomicInteger(this.loadThreads);
+
+		ExecutorService loadExecutor = EventBatch.createExecutor(this.loadThreads);
+		ExecutorService calculateExecutor = Executors.newFixedThreadPool(this.calculateThreads);
+		try{
+			// Stage 1: load the events in order
+			for(int t = 0; t < this.loadThreads; t++){
+				loadExecutor.execute(() -> {
+					try{
+						while(true){
+							// Wait for room outside the lock, so a waiting loader doesn't stop the others
+							window.acquire();
+							Item item;
+							synchronized(next){
+								if(next[0] >= events.size()){
+									window.release();
+									break;
+								}
+								item = new Item(next[0]++, events.get(next[0]-1));
+							}
+							// Every item is passed on, also when loading fails with an Error, the writer waits for it
+							try{
+								item.rolling = this.rolling(item.event[0], item.event[1], pairs, rollings);
+								item.loaded = CAPMEvent.load(item.event[0], item.event[1], item.event[2], this.loader, item.rolling);
+							}
+							catch(Throwable e){
+								item.error = e;
+							}
+							loaded.put(item);
+						}
+						if(loading.decrementAndGet() == 0){
+							for(int i = 0; i < this.calculateThreads; i++){
+								loaded.put(Item.END);
+							}
+						}
+					}
+					catch(InterruptedException e){ } // The batch is stopped
+				});
+			}
+
+			// Stage 2: calculate the loaded events
+			for(int t = 0; t < this.calculateThreads; t++){
+				calculateExecutor.execute(() -> {
+					try{
+						for(Item item = loaded.take(); item != Item.END; item = loaded.take()){
+							if(item.error == null){
+								try{
+									item.result = item.loaded.calculate(item.rolling);
+								}
+								catch(Throwable e){
+									item.error = e;
+								}
+							}
+							// The data isn't needed anymore
+							item.loaded = null;
+							calculated.put(item);
+						}
+					}
+					catch(InterruptedException e){ } // The batch is stopped
+				});
+			}
+
+			// Stage 3: write the results in order, as soon as they are available
+			List<String> results = new ArrayList<String>(events.size());
+			Map<Integer, Item> waiting = new HashMap<Integer, Item>();
+			while(results.size() < events.size()){
+				Item item = calculated.take();
+				waiting.put(item.index, item);
+				while((item = waiting.remove(results.size())) != null){
+					EventBatch.report(item, log);
+					results.add(item.result == null ? null : String.join(";", item.result));
+					window.release();
+				}
+			}
+			return results;
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			return new ArrayList<String>();
+		}
+		finally{
+			loadExecutor.shutdownNow();
+			calculateExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes the result of the given event to the log, or reports why it failed
+	 */
+	private static void report(Item item, Log log){
+		Metrics.count(item.error == null ? Metrics.Counter.EVENTS : Metrics.Counter.FAILED_EVENTS, 1);
+		if(item.error == null){
+			System.out.println(String.join(";", item.result));
+			long start = Metrics.start();
+			log.write(CAPMEvent.COLUMNS, item.result);
+			Metrics.stop(Metrics.Stage.WRITE, start);
+		}
+		else if(item.error instanceof DateTimeParseException){
+			System.err.println("Datum '" + item.event[2] + "' niet in juiste format");
+		}
+		else if(item.error instanceof IOException){
+			System.err.println("Kan de stockdata van " + item.event[0] + " op " + item.event[2] + " niet lezen.");
+		}
+		else{
+			System.err.println("Fout bij " + item.event[0] + " op " + item.event[2]);
+			item.error.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the rolling BETA of the given company and market, it is calculated once by the first event which needs it.
+	 * @return The rolling BETA or null if the pair has no rolling BETA
+	 */
+	private RollingBeta rolling(String comp, String market, Map<String, int[]> pairs, ConcurrentHashMap<String, CompletableFuture<RollingBeta>> rollings){
+		String key = comp + ";" + market;
+		int[] range = pairs.get(key);
+		if(range == null){
+			return null;
+		}
+		CompletableFuture<RollingBeta> future = new CompletableFuture<RollingBeta>();
+		CompletableFuture<RollingBeta> existing = rollings.putIfAbsent(key, future);
+		if(existing != null){
+			return existing.join();
+		}
+		try{
+			int start = (int) EpochDay.toLocalDate(range[0]).minusYears(1).toEpochDay();
+			Data compData = this.loader.load(comp, 'd', start, range[1]);
+			Data marketData = this.loader.load(market, 'd', start, range[1]);
+			future.complete(new RollingBeta(compData.getSeries(), marketData.getSeries(), range[0], range[1]));
+		}
+		catch(IOException | RuntimeException e){
+			// The events calculate their own BETA
+			future.complete(null);
+		}
+		catch(Error e){
+			// The events waiting for this pair fail as well instead of waiting forever
+			future.completeExceptionally(e);
+			throw e;
+		}
+		return future.join();
+	}
+
+	/**
+	 * @param events The events
+	 * @return The first and last event day of every company and market pair with multiple events, empty when rolling
+	 * 			BETA isn't enabled or the BETA estimator can't be calculated rolling.
+	 */
+	private static Map<String, int[]> rollingPairs(List<String[]> events){
+		Map<String, int[]> pairs = new HashMap<String, int[]>();
+		if(!Settings.rollingBeta || Settings.exactRegression || Settings.betaEstimator != BetaEstimator.OLS || Settings.betaInterval != 'd'){
+			return pairs;
+		}
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for(String[] event: events){
+			try{
+				int day = EpochDay.parseDMY(event[2]);
+				String key = event[0] + ";" + event[1];
+				int[] range = pairs.get(key);
+				if(range == null){
+					pairs.put(key, new int[]{ day, day });
+				}
+				else{
+					range[0] = Math.min(range[0], day);
+					range[1] = Math.max(range[1], day);
+				}
+				counts.merge(key, 1, Integer::sum);
+			}
+			catch(DateTimeException e){ } // Reported when the event is calculated
+		}
+		pairs.keySet().removeIf(key -> counts.get(key) < 2);
+		return pairs;
+	}
+
+	/**
+	 * Creates an executor using virtual threads when the JVM supports them, otherwise a fixed thread pool.
+	 * @param parallelism The number of threads of the fixed thread pool
+	 * @return The executor
+	 */
+	static ExecutorService createExecutor(int parallelism){
+		try{
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		}
+		catch(ReflectiveOperationException e){
+			return Executors.newFixedThreadPool(parallelism);
+		}
+	}
+
+	/**
+	 * An event on its way through the stages
+	 */
+	private static class Item {
+		// Marks the end of the events
+		static final Item END = new Item(-1, null);
+
+		// Position of the event in the batch
+		final int index;
+		// Company, market and date
+		final String[] event;
+		// Rolling BETA of the company and market, if any
+		RollingBeta rolling;
+		// The loaded stock data
+		CAPMEvent loaded;
+		// The result fields
+		String[] result;
+		// Why the event failed, if it did
+		Throwable error;
+
+		Item(int index, String[] event){
+			this.index = index;
+			this.event = event;
+		}
+	}
+}
@@ -1,10 +1,11 @@
 package program;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 
+/**
+ * Appends lines to a file through its shared ResultSink, so lines are written in batches instead of one by one.
+ * @author Aeilko Bos
+ */
 public class Log {
 	private String file;
 	
@@ -12,11 +13,26 @@ public class Log {
 		this.file = file;
 	}
 	
+	/**
+	 * Appends the given line as it is
+	 * @param data The line
+	 */
 	public void write(String data){
 		try{
-			data += System.lineSeparator();
-			Files.write(Paths.get(this.file), data.getBytes(), StandardOpenOption.APPEND);
+			ResultSink.get(this.file).writeLine(data);
 		}
-		catch(IOException e){ System.err.println("Can't write to log file"); }
+		catch(IOException | IllegalStateException e){ System.err.println("Can't write to log file"); }
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Appends a result row in the result format of the settings
+	 * @param names The names of the fields
+	 * @param values The values of the fields, empty if a field has no value
+	 */
+	public void write(String[] names, String[] values){
+		try{
+			ResultSink.get(this.file).write(names, values);
+		}
+		catch(IOException | IllegalStateException e){ System.err.println("Can't write to log file"); }
+	}
+}
@@ -0,0 +1,95 @@
+package program;
+
+/**
+ * Keeps the largest difference between the results of two numeric backends, see Settings.validateNumeric.
+ * @author Aeilko Bos
+ */
+public class NumericCheck {
+	// The single instance
+	private static final NumericCheck instance = new NumericCheck();
+
+	// Number of compared events and fields
+	private long events;
+	private long fields;
+	// Fields which are empty in one result but not in the other
+	private long mismatches;
+	// Largest absolute difference and where it was found
+	private double maxDivergence;
+	private String maxEvent;
+	private String maxColumn;
+
+
+	// Constructor
+	private NumericCheck(){
+		this.reset();
+	}
+
+
+	// Commands
+	/**
+	 * @return The single instance
+	 */
+	public static NumericCheck getInstance(){
+		return NumericCheck.instance;
+	}
+
+	/**
+	 * Forgets all compared results
+	 */
+	public synchronized void reset(){
+		this.events = 0;
+		this.fields = 0;
+		this.mismatches = 0;
+		this.maxDivergence = 0;
+		this.maxEvent = null;
+		this.maxColumn = null;
+	}
+
+	/**
+	 * Compares the numeric fields of two results of the same event
+	 * @param event Description of the event
+	 * @param a The result of the first backend
+	 * @param b The result of the second backend
+	 */
+	public synchronized void compare(String event, String[] a, String[] b){
+		this.events++;
+		for(int i = 3; i < a.length; i++){
+			if(a[i].isEmpty() || b[i].isEmpty()){
+				if(a[i].isEmpty() != b[i].isEmpty()){
+					this.mismatches++;
+				}
+				continue;
+			}
+			this.fields++;
+			double divergence = Math.abs(Double.parseDouble(a[i]) - Double.parseDouble(b[i]));
+			if(divergence > this.maxDivergence || this.maxEvent == null){
+				this.maxDivergence = divergence;
+				this.maxEvent = event;
+				this.maxColumn = CAPMEvent.COLUMNS[i];
+			}
+		}
+	}
+
+	/**
+	 * Prints the largest divergence to System.out, if any results were compared
+	 */
+	public synchronized void report(){
+		if(this.events == 0){
+			return;
+		}
+		System.out.println("Numeric backends " + Settings.numeric + " and " + Settings.validateNumeric + ": " + this.events + " events, " + this.fields + " fields compared");
+		System.out.println("Max divergence:\t" + this.maxDivergence + " (" + this.maxColumn + " of " + this.maxEvent + ")");
+		if(this.mismatches > 0){
+			System.out.println("Empty in only one backend:\t" + this.mismatches);
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The largest absolute difference found
+	 */
+	public synchronized double getMaxDivergence(){
+		return this.maxDivergence;
+	}
+}
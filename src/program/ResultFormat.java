@@ -0,0 +1,130 @@
+package program;
+
+import java.util.regex.Pattern;
+
+/**
+ * Output formats of result rows.
+ * @author Aeilko Bos
+ */
+public enum ResultFormat {
+	/**
+	 * Fields separated by semicolons without a header, the format results.csv has always been written in
+	 */
+	DUTCH_CSV(".csv"){
+		@Override
+		public String format(String[] names, String[] values){
+			return String.join(";", values);
+		}
+	},
+	/**
+	 * Comma separated values (RFC 4180) with a header
+	 */
+	CSV(".csv"){
+		@Override
+		public String format(String[] names, String[] values){
+			StringBuilder line = new StringBuilder();
+			for(int i = 0; i < values.length; i++){
+				if(i > 0){
+					line.append(',');
+				}
+				ResultFormat.appendCSV(line, values[i]);
+			}
+			return line.toString();
+		}
+
+		@Override
+		public String header(String[] names){
+			return this.format(names, names);
+		}
+	},
+	/**
+	 * One JSON object per line, numbers are written as numbers and empty fields as null
+	 */
+	JSON_LINES(".jsonl"){
+		@Override
+		public String format(String[] names, String[] values){
+			StringBuilder line = new StringBuilder("{");
+			for(int i = 0; i < values.length; i++){
+				if(i > 0){
+					line.append(',');
+				}
+				ResultFormat.appendJSON(line, names[i]);
+				line.append(':');
+				if(values[i] == null || values[i].isEmpty()){
+					line.append("null");
+				}
+				else if(NUMBER.matcher(values[i]).matches()){
+					line.append(values[i]);
+				}
+				else{
+					ResultFormat.appendJSON(line, values[i]);
+				}
+			}
+			return line.append('}').toString();
+		}
+	};
+
+	// A JSON number
+	private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+	// Extension of files in this format
+	private final String extension;
+
+	private ResultFormat(String extension){
+		this.extension = extension;
+	}
+
+
+	// Queries
+	/**
+	 * @param names The names of the fields
+	 * @param values The values of the fields, empty if a field has no value
+	 * @return The row as a line, without line separator
+	 */
+	public abstract String format(String[] names, String[] values);
+
+	/**
+	 * @param names The names of the fields
+	 * @return The first line of a file in this format, or null if the format has no header
+	 */
+	public String header(String[] names){
+		return null;
+	}
+
+	/**
+	 * @return The extension of files in this format, including the dot
+	 */
+	public String getExtension(){
+		return this.extension;
+	}
+
+	private static void appendCSV(StringBuilder line, String value){
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0){
+			line.append(value);
+			return;
+		}
+		line.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+
+	private static void appendJSON(StringBuilder line, String value){
+		line.append('"');
+		for(int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			switch(c){
+			case '"': line.append("\\\""); break;
+			case '\\': line.append("\\\\"); break;
+			case '\n': line.append("\\n"); break;
+			case '\r': line.append("\\r"); break;
+			case '\t': line.append("\\t"); break;
+			default:
+				if(c < 0x20){
+					line.append(String.format("\\u%04x", (int) c));
+				}
+				else{
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+}
@@ -0,0 +1,264 @@
+package program;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import stockdata.Metrics;
+
+/**
+ * Buffered file which is appended to by a background thread.
+ * Writers only copy their line into a buffer, the background thread writes everything buffered with a single
+ * write (group commit) once the buffer holds flushBytes or the oldest line has waited flushMillis.
+ * The file stays open until the sink is closed, all sinks are closed (and flushed) when the JVM shuts down.
+ * Lines of concurrent writers are never interleaved.
+ * @author Aeilko Bos
+ */
+public class ResultSink implements Closeable {
+	// The open sinks, per file
+	private static final ConcurrentHashMap<Path, ResultSink> sinks = new ConcurrentHashMap<Path, ResultSink>();
+	static{
+		Runtime.getRuntime().addShutdownHook(new Thread(ResultSink::closeAll, "result-sink-shutdown"));
+	}
+
+	// The file
+	private final Path file;
+	private final FileChannel channel;
+	// Format of the result rows
+	private final ResultFormat format;
+	// Buffered bytes which trigger a write
+	private final int flushBytes;
+	// Maximum time a line is buffered
+	private final long flushMillis;
+	// Writes the buffer to the file
+	private final Thread writer;
+
+	// Lines which haven't been written, guarded by this
+	private ByteArrayOutputStream buffer;
+	// Time the oldest line in the buffer was added
+	private long bufferedSince;
+	// Whether the file needs a header before the first row
+	private boolean needsHeader;
+	// Number of bytes added and written
+	private long added;
+	private long written;
+	// Whether a flush is requested
+	private boolean flushRequested;
+	private boolean closed;
+
+
+	// Constructor
+	/**
+	 * Opens the given file for appending
+	 * @param file The file, created if it doesn't exist
+	 * @param format Format of the result rows
+	 * @param flushBytes Buffered bytes which trigger a write
+	 * @param flushMillis Maximum time a line is buffered
+	 * @throws IOException If the file can't be opened
+	 */
+	public ResultSink(Path file, ResultFormat format, int flushBytes, long flushMillis) throws IOException{
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.format = format;
+		this.flushBytes = Math.max(flushBytes, 1);
+		this.flushMillis = Math.max(flushMillis, 1);
+		this.buffer = new ByteArrayOutputStream(this.flushBytes);
+		this.needsHeader = this.channel.size() == 0;
+		this.writer = new Thread(this::run, "result-sink " + file.getFileName());
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+
+	// Commands
+	/**
+	 * Returns the open sink of the given file, or opens one with the format and thresholds of the settings
+	 * @param file The file
+	 * @return The sink
+	 * @throws IOException If the file can't be opened
+	 */
+	public static ResultSink get(String file) throws IOException{
+		Path path = Paths.get(file).toAbsolutePath().normalize();
+		try{
+			return sinks.computeIfAbsent(path, p -> {
+				try{
+					return new ResultSink(p, Settings.resultFormat, Settings.flushBytes, Settings.flushMillis);
+				}
+				catch(IOException e){ throw new IllegalStateException(e); }
+			});
+		}
+		catch(IllegalStateException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes all open sinks
+	 */
+	public static void closeAll(){
+		for(ResultSink sink: new ArrayList<ResultSink>(sinks.values())){
+			sink.close();
+		}
+	}
+
+	/**
+	 * Adds a result row in the format of this sink
+	 * @param names The names of the fields
+	 * @param values The values of the fields, empty if a field has no value
+	 */
+	public void write(String[] names, String[] values){
+		String line = this.format.format(names, values);
+		synchronized(this){
+			if(this.needsHeader){
+				this.needsHeader = false;
+				String header = this.format.header(names);
+				if(header != null){
+					this.writeLine(header);
+				}
+			}
+			this.writeLine(line);
+		}
+	}
+
+	/**
+	 * Adds a line as it is
+	 * @param line The line, without line separator
+	 */
+	public void writeLine(String line){
+		byte[] bytes = (line + System.lineSeparator()).getBytes(Charset.defaultCharset());
+		synchronized(this){
+			if(this.closed){
+				throw new IllegalStateException("'" + this.file + "' is closed");
+			}
+			// Wait when the writer can't keep up
+			while(this.buffer.size() >= 4 * this.flushBytes && !this.closed){
+				try{
+					this.wait();
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			if(this.buffer.size() == 0){
+				this.bufferedSince = System.currentTimeMillis();
+			}
+			this.buffer.write(bytes, 0, bytes.length);
+			this.added += bytes.length;
+			if(this.buffer.size() >= this.flushBytes){
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until all added lines have been written
+	 */
+	public void flush(){
+		synchronized(this){
+			long target = this.added;
+			this.flushRequested = true;
+			this.notifyAll();
+			while(this.written < target && this.writer.isAlive()){
+				try{
+					this.wait();
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all added lines and closes the file
+	 */
+	@Override
+	public void close(){
+		synchronized(this){
+			if(this.closed){
+				return;
+			}
+			this.closed = true;
+			this.notifyAll();
+		}
+		try{
+			this.writer.join();
+		}
+		catch(InterruptedException e){ Thread.currentThread().interrupt(); }
+		try{
+			this.channel.close();
+		}
+		catch(IOException e){ System.err.println("Can't close '" + this.file + "'"); }
+		sinks.remove(this.file, this);
+	}
+
+	/**
+	 * Writes the buffer whenever it is full, old enough, flushed or closed
+	 */
+	private void run(){
+		while(true){
+			ByteArrayOutputStream batch;
+			boolean last;
+			synchronized(this){
+				while(!this.closed && !this.flushRequested && this.buffer.size() < this.flushBytes){
+					long wait = this.buffer.size() == 0 ? 0 : this.bufferedSince + this.flushMillis - System.currentTimeMillis();
+					if(this.buffer.size() > 0 && wait <= 0){
+						break;
+					}
+					try{
+						this.wait(wait);
+					}
+					catch(InterruptedException e){ } // Only close stops the writer
+				}
+				batch = this.buffer;
+				this.buffer = new ByteArrayOutputStream(this.flushBytes);
+				this.flushRequested = false;
+				last = this.closed;
+				// Writers waiting for space can continue
+				this.notifyAll();
+			}
+
+			if(batch.size() > 0){
+				long start = Metrics.start();
+				try{
+					ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+					while(bytes.hasRemaining()){
+						this.channel.write(bytes);
+					}
+					Metrics.count(Metrics.Counter.BYTES_WRITTEN, batch.size());
+				}
+				catch(IOException e){ System.err.println("Can't write to '" + this.file + "'"); }
+				Metrics.stop(Metrics.Stage.FLUSH, start);
+			}
+			synchronized(this){
+				this.written += batch.size();
+				this.notifyAll();
+			}
+			if(last){
+				return;
+			}
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return Format of the result rows
+	 */
+	public ResultFormat getFormat(){
+		return this.format;
+	}
+}
@@ -2,8 +2,11 @@ package program;
 
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
+
+import processing.BetaEstimator;
+import processing.NumericBackend;
+import stockdata.HttpPriceProvider;
 
 public class Settings {
 	
@@ -13,9 +16,139 @@ public class Settings {
 	// The number of days after the event from which the data should be collected
 	public static final int daysAfter = 5;
 	
-	// Date format
-	public static final DateFormat formatter = new SimpleDateFormat("dd-MM-yyyy");
+	// The number of trading days in the estimation window of an event study (-Dstockdata.estimationDays=n)
+	public static final int estimationDays = Integer.getInteger("stockdata.estimationDays", 250);
+	
+	// The number of bootstrap resamples of the confidence interval of the mean CAR (-Dstockdata.bootstrapResamples=n)
+	public static final int bootstrapResamples = Integer.getInteger("stockdata.bootstrapResamples", 10000);
+	
+	// Confidence level of the bootstrap interval
+	public static final double confidenceLevel = 0.95;
+	
+	// Seed of the bootstrap, the same seed gives the same interval (-Dstockdata.seed=n)
+	public static final long seed = Long.getLong("stockdata.seed", 1);
 	
 	// Math context for dividing BigDecimals
 	public static final MathContext mc = new MathContext(10, RoundingMode.HALF_UP);
+	
+	// Use the BigDecimal regression instead of the double precision one (-Dstockdata.exactRegression=true)
+	public static final boolean exactRegression = Boolean.getBoolean("stockdata.exactRegression");
+	
+	// Estimator of BETA: OLS, SCHOLES_WILLIAMS or DIMSON (-Dstockdata.betaEstimator=OLS)
+	public static final BetaEstimator betaEstimator = Settings.option("stockdata.betaEstimator", BetaEstimator.class, "OLS");
+	
+	// Interval of the returns BETA is estimated on: d, w or m, resampled from the daily data (-Dstockdata.betaInterval=d)
+	// A year has less than 3 yearly returns, so y isn't supported
+	public static final char betaInterval = Settings.interval("stockdata.betaInterval", "d", "dwm");
+	
+	// Calculate BETA over a sliding window for company and market pairs with multiple events in auto mode, the BETA
+	// can differ in the last digits from the BETA of a single event (-Dstockdata.rollingBeta=true)
+	public static final boolean rollingBeta = Boolean.getBoolean("stockdata.rollingBeta");
+	
+	// Number of events which are loaded at the same time in auto mode (-Dstockdata.parallelism=n)
+	public static final int parallelism = Integer.getInteger("stockdata.parallelism", Runtime.getRuntime().availableProcessors());
+	
+	// Number of events which are calculated at the same time in auto mode (-Dstockdata.calculateThreads=n)
+	public static final int calculateThreads = Integer.getInteger("stockdata.calculateThreads", Runtime.getRuntime().availableProcessors());
+	
+	// Number of events which can wait between two stages in auto mode (-Dstockdata.queueSize=n)
+	public static final int queueSize = Integer.getInteger("stockdata.queueSize", 2 * parallelism);
+	
+	// Directory of the stock data cache (-Dstockdata.cacheDir=dir)
+	public static final String cacheDir = System.getProperty("stockdata.cacheDir", "data/cache");
+	
+	// Maximum size of the stock data cache in MB (-Dstockdata.cacheMaxMB=n)
+	public static final long cacheMaxBytes = Long.getLong("stockdata.cacheMaxMB", 256) * 1024 * 1024;
+	
+	// Maximum age of cached stock data in days (-Dstockdata.cacheMaxAgeDays=n)
+	public static final int cacheMaxAgeDays = Integer.getInteger("stockdata.cacheMaxAgeDays", 30);
+	
+	// Single store file of the daily stock data of all companies, used instead of the cache when set, see HistoryStore (-Dstockdata.store=data/history.store)
+	public static final String store = System.getProperty("stockdata.store", "");
+	
+	// Whether the loaded stock data of every event is also exported to a CSV file in data/ (-Dstockdata.exportCSV=true)
+	public static final boolean exportCSV = Boolean.getBoolean("stockdata.exportCSV");
+	
+	// Vendor of the stock data: http or replay (-Dstockdata.provider=http)
+	public static final String provider = System.getProperty("stockdata.provider", "http");
+	
+	// URL template of the HTTP provider, see HttpPriceProvider (-Dstockdata.priceUrl=url)
+	public static final String priceUrl = System.getProperty("stockdata.priceUrl", HttpPriceProvider.YAHOO_ICHART);
+	
+	// Directory of the replay provider (-Dstockdata.replayDir=dir)
+	public static final String replayDir = System.getProperty("stockdata.replayDir", "data/replay");
+	
+	// Maximum duration of setting up a connection in milliseconds (-Dstockdata.connectTimeout=ms)
+	public static final long connectTimeoutMillis = Long.getLong("stockdata.connectTimeout", 10000);
+	
+	// Maximum duration of a request in milliseconds (-Dstockdata.requestTimeout=ms)
+	public static final long requestTimeoutMillis = Long.getLong("stockdata.requestTimeout", 30000);
+	
+	// Number of retries of a failed request (-Dstockdata.retries=n)
+	public static final int retries = Integer.getInteger("stockdata.retries", 3);
+	
+	// Maximum number of requests at the same time (-Dstockdata.maxConnections=n)
+	public static final int maxConnections = Integer.getInteger("stockdata.maxConnections", 8);
+	
+	// Format of the results: DUTCH_CSV, CSV or JSON_LINES (-Dstockdata.resultFormat=DUTCH_CSV)
+	public static final ResultFormat resultFormat = Settings.option("stockdata.resultFormat", ResultFormat.class, "DUTCH_CSV");
+	
+	// File the results are appended to (-Dstockdata.resultFile=file)
+	public static final String resultFile = System.getProperty("stockdata.resultFile", "results" + resultFormat.getExtension());
+	
+	// Buffered bytes after which results are written (-Dstockdata.flushKB=n)
+	public static final int flushBytes = Integer.getInteger("stockdata.flushKB", 64) * 1024;
+	
+	// Maximum time results are buffered in milliseconds (-Dstockdata.flushMillis=ms)
+	public static final long flushMillis = Long.getLong("stockdata.flushMillis", 1000);
+	
+	// Representation of numbers in the CAPM calculation: BIG_DECIMAL, DOUBLE or FIXED (-Dstockdata.numeric=BIG_DECIMAL)
+	public static final NumericBackend numeric = Settings.option("stockdata.numeric", NumericBackend.class, "BIG_DECIMAL");
+	
+	// Second backend every event is calculated with to report the divergence, none by default (-Dstockdata.validateNumeric=FIXED)
+	public static final NumericBackend validateNumeric = Settings.option("stockdata.validateNumeric", NumericBackend.class, null);
+	
+	
+	/**
+	 * Reads the settings, a property with a value which isn't allowed is reported by an ExceptionInInitializerError
+	 * with an IllegalArgumentException as cause. Called first by main, so the error is thrown once instead of a
+	 * NoClassDefFoundError on every later use of the settings.
+	 */
+	public static void load(){
+	}
+	
+	/**
+	 * @param property The system property
+	 * @param type The enum of the allowed values
+	 * @param def The default value, null if the property is optional
+	 * @return The constant of the property, null if the property and the default are not set
+	 * @throws IllegalArgumentException If the property isn't one of the constants of the enum
+	 */
+	private static <E extends Enum<E>> E option(String property, Class<E> type, String def){
+		String value = System.getProperty(property, def);
+		if(value == null){
+			return null;
+		}
+		try{
+			return Enum.valueOf(type, value);
+		}
+		catch(IllegalArgumentException e){
+			throw new IllegalArgumentException(property + " must be one of " + Arrays.toString(type.getEnumConstants()) + ", not '" + value + "'");
+		}
+	}
+	
+	/**
+	 * @param property The system property
+	 * @param def The default value
+	 * @param allowed The allowed intervals
+	 * @return The interval of the property
+	 * @throws IllegalArgumentException If the property isn't one of the allowed intervals
+	 */
+	private static char interval(String property, String def, String allowed){
+		String value = System.getProperty(property, def);
+		if(value.length() != 1 || allowed.indexOf(value.charAt(0)) < 0){
+			throw new IllegalArgumentException(property + " must be one of " + allowed + ", not '" + value + "'");
+		}
+		return value.charAt(0);
+	}
 }
\ No newline at end of file
@@ -6,16 +6,41 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import processing.BetaMatrix;
+import processing.Bootstrap;
 import processing.CAPM;
+import processing.CrossSection;
 import processing.DataProcess;
+import processing.EventResult;
+import processing.EventStudy;
+import processing.EventWindow;
+import processing.MultiFactorRegression;
+import processing.RollingBeta;
+import processing.SignificanceTests;
 import stockdata.Data;
+import stockdata.DataLoader;
+import stockdata.EpochDay;
+import stockdata.HistoryStore;
+import stockdata.Metrics;
+import stockdata.PriceCache;
+import stockdata.PriceSeries;
+import stockdata.RemoteLoader;
+import stockdata.RequestData;
+import stockdata.SharedLoader;
+import stockdata.StoreLoader;
+import stockdata.StoreUpdater;
+import stockdata.Universe;
 
 /**
  * Main method for the Stock Data application
@@ -24,48 +49,41 @@ import stockdata.Data;
 public class StockData {
 	// Afronding van BigDecimals
 	public static final MathContext mc = new MathContext(10, RoundingMode.HALF_UP);
+	// The store of the settings, opened by the first loader which uses it
+	private static HistoryStore store;
 	
 	/**
 	 * Calculates the difference using online Linear Regression
 	 * @param comp The handle of the company which was attacked
 	 * @param date The dat of the attack
-	 * @throws ParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
 	 */
-	public static void runLinear(String comp, String date) throws ParseException{
+	public static void runLinear(String comp, String date){
 		// Create start and end days
-		DateFormat formatter = new SimpleDateFormat("dd-MM-yyyy");
-		Date datum = formatter.parse(date);
-		Calendar attack = Calendar.getInstance();
-		attack.setTime(datum);
-		Calendar start = (Calendar) attack.clone();
-		Calendar end = (Calendar) attack.clone();
-		start.add(Calendar.DATE, Settings.daysBefore*(-1));
-		end.add(Calendar.DATE, Settings.daysAfter);
-		
-		// Save the starting and ending dates
-		int startDay = start.get(Calendar.DATE);
-		int startMonth = start.get(Calendar.MONTH);
-		int startYear = start.get(Calendar.YEAR);
-		int attackDay = attack.get(Calendar.DATE);
-		int attackMonth = attack.get(Calendar.MONTH);
-		int attackYear = attack.get(Calendar.YEAR);
-		int endDay = end.get(Calendar.DATE);
-		int endMonth = end.get(Calendar.MONTH);
-		int endYear = end.get(Calendar.YEAR);
+		int attackDay = EpochDay.parseDMY(date);
+		int startDay = attackDay - Settings.daysBefore;
+		int endDay = attackDay + Settings.daysAfter;
+		String start = EpochDay.toLocalDate(startDay).format(EpochDay.BASIC);
+		String attack = EpochDay.toLocalDate(attackDay).format(EpochDay.BASIC);
+		String end = EpochDay.toLocalDate(endDay).format(EpochDay.BASIC);
 		
 		try {
-			// Get stock data before the attack and save it
-			Data allData = new Data(comp, 'd', startDay, startMonth, startYear, attackDay, attackMonth, attackYear);
-			formatter = new SimpleDateFormat("yyyMMdd");
-			allData.save("data/" + comp + "_" + formatter.format(start.getTime()) + "-" + formatter.format(attack.getTime()) + ".csv");
+			// Get the stock data before and after the attack at once and save it
+			Data[] windows = new RemoteLoader().loadWindows(comp, 'd', startDay, attackDay, endDay);
+			Data allData = windows[0];
+			if(Settings.exportCSV){
+				allData.exportCSV("data/" + comp + "_" + start + "-" + attack + ".csv");
+			}
 			
 			// Process the stock data before
 			DataProcess p = new DataProcess();
 			BigDecimal mean = p.process(allData);
 			
-			// Get stock data after the attack and save it
-			Data actualData = new Data(comp, 'd', attackDay, attackMonth, attackYear, endDay, endMonth, endYear);
-			actualData.save("data/" + comp + "_" + formatter.format(attack.getTime()) + "-" + formatter.format(end.getTime()) + ".csv");
+			// Save the stock data after the attack
+			Data actualData = windows[1];
+			if(Settings.exportCSV){
+				actualData.exportCSV("data/" + comp + "_" + attack + "-" + end + ".csv");
+			}
 			
 			// Process the stock data after the attack
 			BigDecimal actual = p.process(actualData);
@@ -74,12 +92,12 @@ public class StockData {
 			BigDecimal difference = actual.subtract(mean);
 			
 			// Calculate the percent difference based on the opening price on the day of the attack.
-			Calendar firstDay = attack;
-			BigDecimal attackOpen = null;
-			while(attackOpen == null){
-				attackOpen = actualData.getOpen(firstDay.getTime());
-				firstDay.add(Calendar.DATE, 1);
+			PriceSeries actualSeries = actualData.getSeries();
+			int firstDay = actualSeries.ceilingIndex(attackDay);
+			if(firstDay >= actualSeries.size()){
+				throw new IOException("Geen stockdata van " + comp + " na " + date);
 			}
+			BigDecimal attackOpen = BigDecimal.valueOf(actualSeries.getOpen(firstDay));
 			BigDecimal percentDifference = difference.divide(attackOpen, mc).multiply(new BigDecimal(100));
 			
 			// Show results
@@ -104,119 +122,420 @@ public class StockData {
 	 * @param comp The handle of the company which has been attacked
 	 * @param market The market on which the company is traded
 	 * @param date The date of the attack.
-	 * @throws ParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
 	 */
-	public static void runCAPM(String comp, String market, String date) throws ParseException{
-		// Save result
-		String file = "results.csv";
-		String resultLine = comp + ";" + market + ";" + date;
-		
-		// Read date
-		DateFormat formatter = new SimpleDateFormat("dd-MM-yyyy");
-		Date attackDate = formatter.parse(date);
-		
+	public static void runCAPM(String comp, String market, String date){
 		try {
-			// Calculate all dates
-			Calendar attack = Calendar.getInstance();
-			attack.setTime(attackDate);
-			int attackDay = attack.get(Calendar.DATE);
-			int attackMonth = attack.get(Calendar.MONTH);
-			int attackYear = attack.get(Calendar.YEAR);
-			Calendar start = (Calendar) attack.clone();
-			start.add(Calendar.YEAR, -1);
-			int startDay = start.get(Calendar.DATE);
-			int startMonth = start.get(Calendar.MONTH);
-			int startYear = start.get(Calendar.YEAR);
-			Calendar end = (Calendar) attack.clone();
-			end.add(Calendar.DATE, 5);
-			int endDay = end.get(Calendar.DATE);
-			int endMonth = end.get(Calendar.MONTH);
-			int endYear = end.get(Calendar.YEAR);
-			
-			// Calculate BETA
-			Data compData = new Data(comp, 'd', startDay, startMonth, startYear, attackDay, attackMonth, attackYear);
-			Data marketData = new Data(market, 'd', startDay, startMonth, startYear, attackDay, attackMonth, attackYear);
-			compData.save("data/" + comp + "_" + formatter.format(start.getTime()) + "-" + formatter.format(attack.getTime()) + ".csv");
-			marketData.save("data/" + market + "_" + formatter.format(start.getTime()) + "-" + formatter.format(attack.getTime()) + ".csv");
-			BigDecimal BETA = CAPM.calculateBETA(compData, marketData, attackDate);
-			resultLine += ";" + BETA;
+			String[] result = CAPMEvent.load(comp, market, date, StockData.createLoader()).calculate(null);
 			
-			// Calculate ERM
-			BigDecimal startOpen = marketData.getOpen(start.getTime());
-			while(startOpen == null){
-				start.add(Calendar.DATE, 1);
-				startOpen = marketData.getOpen(start.getTime());
+			// Save the results
+			System.out.println(String.join(";", result));
+			Log l = new Log(Settings.resultFile);
+			l.write(CAPMEvent.COLUMNS, result);
+		}
+		catch (IOException e) { System.err.println("Kan n of meerdere bestanden niet lezen."); e.printStackTrace(); };
+	}
+	
+	/**
+	 * Calculates the difference using CAPM
+	 * @param comp The handle of the company which has been attacked
+	 * @param market The market on which the company is traded
+	 * @param date The date of the attack.
+	 * @param loader The source of the stock data
+	 * @return The result line (company;market;date;BETA;ERM followed by ER;actual;difference for every day)
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws IOException If the stock data can't be loaded
+	 */
+	public static String calculateCAPM(String comp, String market, String date, DataLoader loader) throws IOException{
+		return StockData.calculateCAPM(comp, market, date, loader, null);
+	}
+	
+	/**
+	 * Calculates the difference using CAPM
+	 * @param comp The handle of the company which has been attacked
+	 * @param market The market on which the company is traded
+	 * @param date The date of the attack.
+	 * @param loader The source of the stock data
+	 * @param rolling The rolling BETA and ERM of the company and market, or null to calculate them for this event
+	 * @return The result line (company;market;date;BETA;ERM followed by ER;actual;difference for every day)
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 * @throws IOException If the stock data can't be loaded
+	 */
+	public static String calculateCAPM(String comp, String market, String date, DataLoader loader, RollingBeta rolling) throws IOException{
+		return String.join(";", CAPMEvent.load(comp, market, date, loader, rolling).calculate(rolling));
+	}
+	
+	
+	/**
+	 * Calculates the abnormal returns of all given events with the market model, in one universe which loads every
+	 * company and market once. Writes a line per event to the study file and prints the cross-sectional means.
+	 * @param events The events, every event is an array containing the company, the market and the date.
+	 * @param before Number of trading days before the event in the event window
+	 * @param after Number of trading days after the event in the event window
+	 * @return The means over the events
+	 */
+	public static CrossSection runStudy(List<String[]> events, int before, int after){
+		EventWindow window = new EventWindow(before, after, Settings.estimationDays);
+		
+		// Read the events and collect the tickers
+		String[] comps = new String[events.size()];
+		String[] markets = new String[events.size()];
+		int[] days = new int[events.size()];
+		Set<String> ids = new LinkedHashSet<String>();
+		int first = Integer.MAX_VALUE;
+		int last = Integer.MIN_VALUE;
+		for(int i = 0; i < events.size(); i++){
+			String[] event = events.get(i);
+			comps[i] = event[0];
+			markets[i] = event[1];
+			try{
+				days[i] = EpochDay.parseDMY(event[2]);
+				first = Math.min(first, days[i]);
+				last = Math.max(last, days[i]);
+				ids.add(event[0]);
+				ids.add(event[1]);
 			}
+			catch(DateTimeParseException e){
+				System.err.println("Datum '" + event[2] + "' niet in juiste format");
+				days[i] = Integer.MIN_VALUE;
+			}
+		}
+		if(ids.isEmpty()){
+			return new CrossSection(window, new EventResult[0]);
+		}
+		
+		// Load every ticker once, with room for weekends and holidays around the windows
+		Universe universe = new Universe(new SharedLoader(StockData.createLoader()));
+		int from = first - (-window.getEstimationStart()) * 3 / 2 - 10;
+		int to = last + Math.max(window.getEventEnd(), 0) * 3 / 2 + 10;
+		universe.load(ids, from, to, Settings.parallelism);
+		
+		EventResult[] results = new EventStudy(universe).query(comps, markets, days, window);
+		
+		// Write a line per event
+		String[] columns = new String[7 + window.getEventLength()];
+		columns[0] = "company";
+		columns[1] = "market";
+		columns[2] = "date";
+		columns[3] = "alpha";
+		columns[4] = "beta";
+		columns[5] = "car";
+		columns[6] = "bhar";
+		for(int t = window.getEventStart(); t <= window.getEventEnd(); t++){
+			columns[7 + t - window.getEventStart()] = "ar" + t;
+		}
+		Log log = new Log("study" + Settings.resultFormat.getExtension());
+		for(int i = 0; i < results.length; i++){
+			EventResult r = results[i];
+			if(r == null){
+				if(days[i] != Integer.MIN_VALUE){
+					System.err.println("Geen stockdata van " + comps[i] + " rond " + events.get(i)[2]);
+				}
+				continue;
+			}
+			String[] values = new String[columns.length];
+			values[0] = comps[i];
+			values[1] = markets[i];
+			values[2] = events.get(i)[2];
+			values[3] = Double.toString(r.getAlpha());
+			values[4] = Double.toString(r.getBeta());
+			values[5] = Double.toString(r.getCAR());
+			values[6] = Double.toString(r.getBHAR());
+			for(int t = window.getEventStart(); t <= window.getEventEnd(); t++){
+				values[7 + t - window.getEventStart()] = Double.toString(r.getAbnormal(t));
+			}
+			log.write(columns, values);
+		}
+		
+		// Show the means
+		CrossSection means = new CrossSection(window, results);
+		System.out.println("Events:\t\t" + means.getCount() + " of " + events.size());
+		if(means.getCount() == 0){
+			System.err.println("Geen enkel event kon berekend worden");
+			return means;
+		}
+		System.out.println("Day\tAAR\tCAAR");
+		for(int t = window.getEventStart(); t <= window.getEventEnd(); t++){
+			System.out.println(t + "\t" + means.getAAR(t) + "\t" + means.getCAAR(t));
+		}
+		System.out.println("Mean CAR:\t" + means.getMeanCAR());
+		System.out.println("Mean BHAR:\t" + means.getMeanBHAR());
+		if(means.getCount() < 2){
+			return means;
+		}
+		
+		// Significance of the CAR over the event window
+		SignificanceTests tests = new SignificanceTests(window, results, window.getEventStart(), window.getEventEnd());
+		System.out.println("Test\tStatistic\tp-value");
+		System.out.println("Patell\t" + tests.getPatell() + "\t" + SignificanceTests.pValue(tests.getPatell()));
+		System.out.println("BMP\t" + tests.getBMP() + "\t" + SignificanceTests.pValue(tests.getBMP()));
+		System.out.println("Sign\t" + tests.getSign() + "\t" + SignificanceTests.pValue(tests.getSign()));
+		System.out.println("Rank\t" + tests.getRank() + "\t" + SignificanceTests.pValue(tests.getRank()));
+		double[] interval = Bootstrap.meanInterval(tests.getCARs(), Settings.bootstrapResamples, Settings.confidenceLevel, Settings.seed, ForkJoinPool.commonPool());
+		System.out.println((int) (Settings.confidenceLevel * 100) + "% bootstrap interval of the mean CAR:\t[" + interval[0] + ", " + interval[1] + "]");
+		return means;
+	}
+	
+	/**
+	 * Calculates the BETA and ERM of every company on every day against one market and writes them to
+	 * betas (with the extension of the result format), one line per company and day.
+	 * @param market The market
+	 * @param tickers The companies
+	 * @param dates The dates (dd-MM-yyyy)
+	 * @return The matrix, null if none of the dates is valid
+	 */
+	public static BetaMatrix runBetas(String market, List<String> tickers, List<String> dates){
+		List<Integer> valid = new ArrayList<Integer>();
+		List<String> names = new ArrayList<String>();
+		for(String date: dates){
+			try{
+				valid.add(EpochDay.parseDMY(date));
+				names.add(date);
+			}
+			catch(DateTimeParseException e){ System.err.println("Datum '" + date + "' niet in juiste format"); }
+		}
+		if(valid.isEmpty()){
+			return null;
+		}
+		int[] days = valid.stream().mapToInt(Integer::intValue).toArray();
+		int first = Arrays.stream(days).min().getAsInt();
+		int last = Arrays.stream(days).max().getAsInt();
+		
+		// Load every ticker once, with the year before the first day
+		Set<String> ids = new LinkedHashSet<String>(tickers);
+		ids.add(market);
+		Universe universe = new Universe(new SharedLoader(StockData.createLoader()));
+		int from = (int) EpochDay.toLocalDate(first).minusYears(1).toEpochDay() - 7;
+		universe.load(ids, from, last, Settings.parallelism);
+		if(!universe.contains(market)){
+			return null;
+		}
+		
+		BetaMatrix matrix = new BetaMatrix(universe, market, tickers.toArray(new String[0]), days, Settings.betaInterval, Settings.betaEstimator, ForkJoinPool.commonPool());
+		
+		// Write a line per company and day
+		String[] columns = { "company", "market", "date", "beta", "erm", "returns" };
+		Log log = new Log("betas" + Settings.resultFormat.getExtension());
+		for(int t = 0; t < matrix.rows(); t++){
+			for(int d = 0; d < matrix.columns(); d++){
+				double beta = matrix.getBeta(t, d);
+				double erm = matrix.getERM(d);
+				log.write(columns, new String[]{ matrix.getTicker(t), market, names.get(d), Double.isNaN(beta) ? "" : Double.toString(beta), Double.isNaN(erm) ? "" : Double.toString(erm), Integer.toString(matrix.getCount(t, d)) });
+			}
+		}
+		System.out.println("BETA of " + matrix.rows() + " companies on " + matrix.columns() + " days written");
+		return matrix;
+	}
+	
+	/**
+	 * Fits a multi-factor model (e.g. Fama-French) of the company on the year before the given date and writes the
+	 * intercept and the coefficients to factors (with the extension of the result format).
+	 * @param comp The handle of the company
+	 * @param date The date for which the model is fitted
+	 * @param factors The handles of the factors, like a market index and size or value portfolios
+	 * @return The fitted model, or null if it can't be fitted
+	 * @throws DateTimeParseException If the given date isn't in the right format (dd-MM-yyyy)
+	 */
+	public static MultiFactorRegression runFactors(String comp, String date, List<String> factors){
+		int day = EpochDay.parseDMY(date);
+		int from = (int) EpochDay.toLocalDate(day).minusYears(1).toEpochDay();
+		try{
+			DataLoader loader = StockData.createLoader();
+			Data compData = loader.load(comp, 'd', from, day);
+			Data[] factorData = new Data[factors.size()];
+			for(int i = 0; i < factorData.length; i++){
+				factorData[i] = loader.load(factors.get(i), 'd', from, day);
+			}
+			MultiFactorRegression model = CAPM.calculateFactorModel(compData, day, factorData);
 			
-			Calendar attackWeekDay = (Calendar) attack.clone();
-			BigDecimal attackOpen = marketData.getOpen(attackWeekDay.getTime());
-			while(attackOpen == null){
-				attackWeekDay.add(Calendar.DATE, -1);
-				attackOpen = marketData.getOpen(attackWeekDay.getTime());
-			}
-			BigDecimal ERM = attackOpen.subtract(startOpen).divide(startOpen, mc);
-			resultLine += ";" + ERM;
-			
-			
-			// Get Stock data over 5 days
-			Data attackData = new Data(comp, 'd', attackDay, attackMonth, attackYear, endDay, endMonth, endYear);
-			attackData.save("data/" + comp + "_" + formatter.format(attack.getTime()) + "-" + formatter.format(end.getTime()) + ".csv");
-			
-			
-			Calendar cur = Calendar.getInstance();
-			cur.setTime(attackDate);
-			// Loop for 5 days
-			while(cur.getTime().before(end.getTime())){
-				// Read actual data
-				BigDecimal open = attackData.getOpen(cur.getTime());
-				BigDecimal adjClose = attackData.getAdjClose(cur.getTime());
-				
-				// Skip days when the exchange is closed
-				if(open == null){
-					cur.add(Calendar.DATE, 1);
-					resultLine += ";;;";
+			// Show and log the results, a line per coefficient
+			String[] columns = { "company", "date", "factor", "coefficient", "stderr" };
+			Log log = new Log("factors" + Settings.resultFormat.getExtension());
+			System.out.println("Company:\t\t" + comp);
+			System.out.println("Date:\t\t\t" + date);
+			System.out.println("Alpha:\t\t\t" + model.getIntercept());
+			log.write(columns, new String[]{ comp, date, "alpha", Double.toString(model.getIntercept()), "" });
+			for(int j = 0; j < factors.size(); j++){
+				System.out.println(factors.get(j) + ":\t\t" + model.getCoefficient(j) + " (" + model.getStdErr(j) + ")");
+				log.write(columns, new String[]{ comp, date, factors.get(j), Double.toString(model.getCoefficient(j)), Double.toString(model.getStdErr(j)) });
+			}
+			System.out.println("R2:\t\t\t" + model.getR2() + " (" + model.getCount() + " returns)");
+			return model;
+		}
+		catch(IOException e){ System.err.println("De stockdata kan niet worden opgehaald."); }
+		catch(ArithmeticException e){ System.err.println("Kan het factormodel van " + comp + " niet berekenen: " + e.getMessage()); }
+		return null;
+	}
+	
+	/**
+	 * Appends the days since the last refresh of the given tickers to the store of the settings.
+	 * When a market is given, the rolling BETA and ERM of the new days of every ticker are appended to rolling
+	 * (with the extension of the result format).
+	 * @param tickers The tickers, every ticker in the store when empty
+	 * @param market The market, or null
+	 * @return Per updated ticker the first and last day of the appended interval and the number of new rows
+	 * @throws IOException If the store can't be opened
+	 */
+	public static Map<String, int[]> runRefresh(List<String> tickers, String market) throws IOException{
+		if(Settings.store.isEmpty()){
+			System.err.println("Geen store ingesteld, gebruik -Dstockdata.store=file");
+			return new LinkedHashMap<String, int[]>();
+		}
+		HistoryStore store = StockData.getStore();
+		Set<String> ids = new LinkedHashSet<String>(tickers.isEmpty() ? store.getIds() : tickers);
+		if(market != null){
+			ids.add(market);
+		}
+		
+		// Up to yesterday, the prices of today can still change. New tickers get the year before.
+		LocalDate today = LocalDate.now();
+		int to = (int) today.toEpochDay() - 1;
+		int from = (int) today.minusYears(1).toEpochDay() - 7;
+		long start = System.currentTimeMillis();
+		Map<String, int[]> updated = new StoreUpdater(store, RequestData.getDefaultProvider()).update(ids, from, to);
+		int rows = 0;
+		for(int[] interval: updated.values()){
+			rows += interval[2];
+		}
+		System.out.println(updated.size() + " of " + ids.size() + " tickers updated, " + rows + " new days in " + (System.currentTimeMillis() - start) + " ms");
+		if(market == null || store.getRanges(market).length == 0){
+			return updated;
+		}
+		
+		// Rolling BETA and ERM of the new days, from the year before them in the store
+		String[] columns = { "company", "market", "date", "beta", "erm", "returns" };
+		Log log = new Log("rolling" + Settings.resultFormat.getExtension());
+		for(Map.Entry<String, int[]> entry: updated.entrySet()){
+			String id = entry.getKey();
+			int[] interval = entry.getValue();
+			if(id.equals(market) || interval[2] == 0){
+				continue;
+			}
+			int windowStart = (int) EpochDay.toLocalDate(interval[0]).minusYears(1).toEpochDay();
+			PriceSeries comp = store.get(id, windowStart, interval[1]);
+			RollingBeta rolling = new RollingBeta(comp, store.get(market, windowStart, interval[1]), interval[0], interval[1]);
+			for(int day = interval[0]; day <= interval[1]; day++){
+				if(comp.indexOf(day) < 0){
 					continue;
 				}
-				
-				// Calculate CAR data
-				BigDecimal CAR = CAPM.calculateCAR(cur.getTime(), BETA, ERM);
-				
-				// Calculate difference
-				BigDecimal meanDay = adjClose.subtract(open).divide(open, mc);
-				
-				// Show results
-				resultLine += ";" + CAR;
-				resultLine += ";" + meanDay;
-				resultLine += ";" + meanDay.subtract(CAR);
-				
-				// Increase current date with one day.
-				cur.add(Calendar.DATE, 1);
+				String beta;
+				try{
+					beta = CAPM.calculateBETA(rolling, day).toString();
+				}
+				catch(ArithmeticException e){
+					beta = "";
+				}
+				double erm = rolling.getERM(day);
+				log.write(columns, new String[]{ id, market, EpochDay.formatDMY(day), beta, Double.isNaN(erm) ? "" : Double.toString(erm), Integer.toString(rolling.getCount(day)) });
 			}
-			
-			// Save the results
-			System.out.println(resultLine);
-			Log l = new Log(file);
-			l.write(resultLine);
 		}
-		catch (ParseException e){ System.err.println("Kan n of meerdere datums niet lezen."); }
-		catch (IOException e) { System.err.println("Kan n of meerdere bestanden niet lezen."); e.printStackTrace(); };
+		return updated;
+	}
+	
+	/**
+	 * Reads the non-empty lines of a file, like a list of tickers or dates
+	 * @param file The file
+	 * @return The trimmed lines
+	 * @throws IOException If the file can't be read
+	 */
+	private static List<String> readList(String file) throws IOException{
+		List<String> values = new ArrayList<String>();
+		for(String line: Files.readAllLines(Paths.get(file))){
+			if(!line.trim().isEmpty()){
+				values.add(line.trim());
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Reads the events from data/attacks.csv
+	 * @return The events, every event is an array containing the company, the market and the date.
+	 * @throws IOException If the file can't be read
+	 */
+	private static List<String[]> readEvents() throws IOException{
+		List<String> lines = Files.readAllLines(Paths.get("data/attacks.csv"));
+		List<String[]> events = new ArrayList<String[]>();
+		for(String line: lines){
+			String[] cols = line.split(";");
+			if(cols.length >= 3){
+				events.add(cols);
+			}
+		}
+		return events;
+	}
+	
+	
+	/**
+	 * @return The loader for stock data, which uses the store or the cache and Yahoo Finance
+	 */
+	public static DataLoader createLoader(){
+		if(!Settings.store.isEmpty()){
+			try{
+				return new StoreLoader(StockData.getStore(), new RemoteLoader());
+			}
+			catch(IOException e){ System.err.println("Kan store '" + Settings.store + "' niet openen, de cache wordt gebruikt"); }
+		}
+		return new PriceCache(Settings.cacheDir, Settings.cacheMaxBytes, Settings.cacheMaxAgeDays, new RemoteLoader());
+	}
+	
+	/**
+	 * @return The store of the settings, opened once
+	 * @throws IOException If the store can't be opened
+	 */
+	private static synchronized HistoryStore getStore() throws IOException{
+		if(StockData.store == null){
+			StockData.store = new HistoryStore(Paths.get(Settings.store));
+		}
+		return StockData.store;
 	}
 	
 	
 	// Main method
 	public static void main(String[] args){
+		try{
+			Settings.load();
+		}
+		catch(ExceptionInInitializerError e){
+			// A system property with a value which isn't allowed
+			System.err.println(e.getCause().getMessage());
+			return;
+		}
+		Metrics.startReporter();
 		try {
-			if(args.length < 1 || (!"auto".equals(args[0]) && args.length != 3)){
-				System.err.println("Use: StockData [auto] || ([companyHandle] [marketHandle] [attackDate(Format: dd-mm-yyyy)])");
+			if(args.length < 1 || (!"auto".equals(args[0]) && !"study".equals(args[0]) && !"betas".equals(args[0]) && !"refresh".equals(args[0]) && !"factors".equals(args[0]) && args.length != 3)
+					|| ("betas".equals(args[0]) && args.length != 4) || ("refresh".equals(args[0]) && args.length > 3) || ("factors".equals(args[0]) && args.length < 4)){
+				System.err.println("Use: StockData [auto] || (study [daysBefore] [daysAfter]) || (betas [marketHandle] [tickerFile] [dateFile]) || (refresh [tickerFile|all] [marketHandle]) || (factors [companyHandle] [date] [factorHandle]...) || ([companyHandle] [marketHandle] [attackDate(Format: dd-mm-yyyy)])");
 			}
 			else{
 				if(args[0].equals("auto")){
 					System.out.println("Automatic, loading attacks from /data/attacks.csv");
-					List<String> lines = Files.readAllLines(Paths.get("data/attacks.csv"));
-					for(String line: lines){
-						String[] cols = line.split(";");
-						StockData.runCAPM(cols[0], cols[1], cols[2]);
+					List<String[]> events = StockData.readEvents();
+					EventBatch batch = new EventBatch(Settings.parallelism, Settings.calculateThreads, Settings.queueSize, new SharedLoader(StockData.createLoader()));
+					batch.run(events, new Log(Settings.resultFile));
+				}
+				else if(args[0].equals("study")){
+					System.out.println("Event study, loading attacks from /data/attacks.csv");
+					int before = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+					int after = args.length > 2 ? Integer.parseInt(args[2]) : Settings.daysAfter;
+					StockData.runStudy(StockData.readEvents(), before, after);
+				}
+				else if(args[0].equals("refresh")){
+					try{
+						List<String> tickers = args.length > 1 && !args[1].equals("all") ? StockData.readList(args[1]) : new ArrayList<String>();
+						StockData.runRefresh(tickers, args.length > 2 ? args[2] : null);
 					}
+					catch(IOException e){ System.err.println("Kan de store of de lijst met tickers niet openen"); }
+				}
+				else if(args[0].equals("factors")){
+					StockData.runFactors(args[1], args[2], Arrays.asList(args).subList(3, args.length));
+				}
+				else if(args[0].equals("betas")){
+					System.out.println("BETA matrix, loading tickers from " + args[2] + " and dates from " + args[3]);
+					try{
+						StockData.runBetas(args[1], StockData.readList(args[2]), StockData.readList(args[3]));
+					}
+					catch(IOException e){ System.err.println("Kan " + args[2] + " of " + args[3] + " niet openen"); }
 				}
 				else{
 					String comp = args[0];
@@ -227,7 +546,13 @@ public class StockData {
 				}
 			}
 		}
-		catch (ParseException e) { System.err.println("Datum niet in juiste format"); }
+		catch (DateTimeParseException e) { System.err.println("Datum niet in juiste format"); }
 		catch (IOException e) { System.err.println("Kan attacks.csv niet openen"); }
+		finally {
+			NumericCheck.getInstance().report();
+			// Write the buffered results
+			ResultSink.closeAll();
+			Metrics.dump();
+		}
 	}
 }
\ No newline at end of file
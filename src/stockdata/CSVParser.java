@@ -0,0 +1,243 @@
+package stockdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for stock data in CSV format (Date,Open,High,Low,Close,Volume,Adj Close).
+ * The input is read in fixed size blocks and parsed straight from the bytes into a PriceSeries, so the memory
+ * used doesn't depend on the size of the input.
+ * Both the standard format (',' between columns, '.' in numbers) and the Dutch format (';' between columns,
+ * ',' in numbers) are supported, the format is detected on the first line.
+ * @author Aeilko Bos
+ */
+public class CSVParser {
+	// Size of the blocks in which the input is read
+	private static final int BLOCK_SIZE = 64 * 1024;
+	// Exact powers of ten as double
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// The series the rows are added to
+	private final PriceSeries series;
+	// The current line
+	private byte[] line;
+	private int length;
+	// Column separator, 0 until the first line has been read
+	private byte separator;
+	// Decimal separator
+	private byte decimal;
+	// End of the last parsed number
+	private int pos;
+
+
+	// Constructor
+	private CSVParser(int expectedRows){
+		this.series = new PriceSeries(expectedRows);
+		this.line = new byte[256];
+		this.length = 0;
+		this.separator = 0;
+	}
+
+
+	// Commands
+	/**
+	 * Parses the given file
+	 * @param file The CSV file
+	 * @return The parsed series, sorted on day
+	 * @throws IOException If the file can't be read
+	 */
+	public static PriceSeries parse(Path file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			// Rows are at least 40 bytes
+			return CSVParser.parse(channel, (int) Math.min(channel.size() / 40 + 1, 1 << 20));
+		}
+	}
+
+	/**
+	 * Parses the given input until the end of the input, the channel isn't closed.
+	 * @param in The CSV input
+	 * @return The parsed series, sorted on day
+	 * @throws IOException If the input can't be read
+	 */
+	public static PriceSeries parse(ReadableByteChannel in) throws IOException{
+		return CSVParser.parse(in, 256);
+	}
+
+	private static PriceSeries parse(ReadableByteChannel in, int expectedRows) throws IOException{
+		long start = Metrics.start();
+		CSVParser parser = new CSVParser(expectedRows);
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+		while(in.read(buffer) >= 0){
+			buffer.flip();
+			parser.feed(buffer.array(), buffer.position(), buffer.limit());
+			buffer.clear();
+		}
+		parser.endLine();
+		parser.series.sort();
+		parser.series.trim();
+		Metrics.stop(Metrics.Stage.PARSE, start);
+		Metrics.count(Metrics.Counter.ROWS_PARSED, parser.series.size());
+		return parser.series;
+	}
+
+	private void feed(byte[] b, int from, int to){
+		for(int i = from; i < to; i++){
+			byte c = b[i];
+			if(c == '\n'){
+				this.endLine();
+			}
+			else if(c != '\r'){
+				if(this.length == this.line.length){
+					this.line = Arrays.copyOf(this.line, this.length * 2);
+				}
+				this.line[this.length++] = c;
+			}
+		}
+	}
+
+	private void endLine(){
+		if(this.length > 0){
+			if(this.separator == 0){
+				this.detectFormat();
+			}
+			this.parseLine();
+		}
+		this.length = 0;
+	}
+
+	private void detectFormat(){
+		this.separator = ',';
+		this.decimal = '.';
+		for(int i = 0; i < this.length; i++){
+			if(this.line[i] == ';'){
+				this.separator = ';';
+				this.decimal = ',';
+				return;
+			}
+		}
+	}
+
+	private void parseLine(){
+		byte[] b = this.line;
+		int n = this.length;
+		// Filter the name row and other lines which don't start with a date
+		if(n < 10 || b[0] < '0' || b[0] > '9'){
+			return;
+		}
+
+		int day = this.parseDate(b, n);
+		if(day == Integer.MIN_VALUE){
+			return;
+		}
+		double open = this.parseDecimal(b, this.pos + 1, n);
+		double high = this.parseDecimal(b, this.pos + 1, n);
+		double low = this.parseDecimal(b, this.pos + 1, n);
+		double close = this.parseDecimal(b, this.pos + 1, n);
+		double volume = this.parseDecimal(b, this.pos + 1, n);
+		double adjClose = this.parseDecimal(b, this.pos + 1, n);
+		if(Double.isNaN(open) || Double.isNaN(high) || Double.isNaN(low) || Double.isNaN(close) || Double.isNaN(volume) || Double.isNaN(adjClose)){
+			System.err.println("Kon de regel '" + new String(b, 0, n, StandardCharsets.ISO_8859_1) + "' niet lezen");
+			return;
+		}
+		this.series.add(day, open, high, low, close, (long) volume, adjClose);
+	}
+
+	/**
+	 * Parses a yyyy-MM-dd date at the start of the line
+	 * @return The epoch day or Integer.MIN_VALUE if there is no valid date
+	 */
+	private int parseDate(byte[] b, int n){
+		if(b[4] != '-' || b[7] != '-'){
+			return Integer.MIN_VALUE;
+		}
+		int year = digits(b, 0, 4);
+		int month = digits(b, 5, 7);
+		int dayOfMonth = digits(b, 8, 10);
+		this.pos = 10;
+		if(year < 0 || month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31 || (n > 10 && b[10] != this.separator)){
+			return Integer.MIN_VALUE;
+		}
+		try{
+			return EpochDay.of(dayOfMonth, month, year);
+		}
+		catch(RuntimeException e){ return Integer.MIN_VALUE; }
+	}
+
+	private static int digits(byte[] b, int from, int to){
+		int v = 0;
+		for(int i = from; i < to; i++){
+			if(b[i] < '0' || b[i] > '9'){
+				return -1;
+			}
+			v = v*10 + (b[i] - '0');
+		}
+		return v;
+	}
+
+	/**
+	 * Parses the number in the column starting at from, pos is set to the end of the column.
+	 * @return The number or NaN if the column isn't a number (e.g. null)
+	 */
+	private double parseDecimal(byte[] b, int from, int n){
+		int i = from;
+		boolean negative = false;
+		if(i < n && (b[i] == '-' || b[i] == '+')){
+			negative = b[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean seenDecimal = false;
+		boolean exact = true;
+		int start = i;
+		for(; i < n && b[i] != this.separator; i++){
+			byte c = b[i];
+			if(c >= '0' && c <= '9'){
+				if(digits < 18){
+					mantissa = mantissa*10 + (c - '0');
+					if(mantissa != 0){
+						digits++;
+					}
+					if(seenDecimal){
+						scale++;
+					}
+				}
+				else{
+					exact = false;
+				}
+			}
+			else if(c == this.decimal && !seenDecimal){
+				seenDecimal = true;
+			}
+			else{
+				// Exponents and other notations
+				exact = false;
+			}
+		}
+		this.pos = i;
+		if(i == start){
+			return Double.NaN;
+		}
+
+		if(exact && mantissa < (1L << 53) && scale < POW10.length){
+			// Both values are exact doubles, so the division is correctly rounded
+			double v = mantissa / POW10[scale];
+			return negative ? -v : v;
+		}
+		try{
+			String s = new String(b, from, i - from, StandardCharsets.ISO_8859_1);
+			if(this.decimal != '.'){
+				s = s.replace((char) this.decimal, '.');
+			}
+			return Double.parseDouble(s);
+		}
+		catch(NumberFormatException e){ return Double.NaN; }
+	}
+}
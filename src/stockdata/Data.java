@@ -1,38 +1,27 @@
 package stockdata;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
-import java.util.TreeMap;
+import java.util.SortedMap;
 
 /**
  * The stock data of a company over a given time period
  * @author Aeilko Bos
  */
 public class Data {
-	// Opening price on a given day
-	private TreeMap<Date, BigDecimal> open;
-	// The highest price on a given day
-	private TreeMap<Date, BigDecimal> high;
-	// The lowest price on a given day
-	private TreeMap<Date, BigDecimal> low;
-	// The closing price on a given day
-	private TreeMap<Date, BigDecimal> close;
-	// The total volume of stocks traded
-	private TreeMap<Date, Long> volume;
-	// The adjusted closing price
-	private TreeMap<Date, BigDecimal> adjClose;
-	
-	private List<String> rawData;
+	// The opening, highest, lowest, closing and adjusted closing prices and the volume of every day
+	private PriceSeries series;
+	// The daily rows the other intervals are resampled from
+	private PriceSeries daily;
+	// The weekly, monthly and yearly bars, resampled when they are first requested
+	private PriceSeries[] bars;
+	// The interval of series (d=Day, w=Week, m=Month, y=Year)
+	private char mode;
 	
 	
 	// Constructor
@@ -43,6 +32,28 @@ public class Data {
 		this.reset();
 	}
 	
+	/**
+	 * Creates the data model based on the given series
+	 * @param series The daily prices, sorted on day.
+	 */
+	public Data(PriceSeries series){
+		this.series = series;
+		this.daily = series;
+		this.mode = 'd';
+	}
+	
+	/**
+	 * Creates the data model of the given interval, resampled from the given daily series
+	 * @param daily The daily prices, sorted on day.
+	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
+	 * @throws IllegalArgumentException If the mode is unknown
+	 */
+	public Data(PriceSeries daily, char mode){
+		this.daily = daily;
+		this.series = this.getSeries(mode);
+		this.mode = mode;
+	}
+	
 	/**
 	 * Creates the data model based on the given CSV file
 	 * @param csvFile The csv file the data is based on.
@@ -50,120 +61,143 @@ public class Data {
 	public Data(String csvFile){
 		this.reset();
 		try {
-			List<String> data = Files.readAllLines(Paths.get(csvFile));
-			processDataCSV(data);
+			this.series = CSVParser.parse(Paths.get(csvFile));
+			this.daily = this.series;
 		}
 		catch (IOException e) { System.err.println("Het bestand '" + csvFile + "' kon niet gelezen worden");e.printStackTrace(); }
 	}
 	
 	/**
-	 * Creates the data model based on Yahoo Finance data with the given parameters
+	 * Creates the data model based on Yahoo Finance data with the given parameters.
+	 * Weekly, monthly and yearly bars are resampled from the daily data, so the other intervals don't need another download.
 	 * @param id The ID of the company.
 	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
 	 * @param startDay The starting day of the month.
-	 * @param startMonth The start month (1-12).
+	 * @param startMonth The start month (0-11).
 	 * @param startYear The start year.
 	 * @param endDay The end day of the month.
-	 * @param endMonth The end month (1-12)
+	 * @param endMonth The end month (0-11)
 	 * @param endYear The end year
 	 * @throws IOException 
 	 */
 	public Data(String id, char mode, int startDay, int startMonth, int startYear, int endDay, int endMonth, int endYear) throws IOException{
 		this.reset();
-		RequestData src = new RequestData();
-		String data = src.getData(id, mode, startDay, startMonth, startYear, endDay, endMonth, endYear);
-		String[] lines = data.split("\n");
-		List<String> d = new ArrayList<String>();
-		for(String s: lines){
-			d.add(s);
-		}
-		this.processData(d);
+		// startMonth and endMonth both start at 0, like the Yahoo Finance ichart API
+		int from = Resampler.periodStart(EpochDay.of(startDay, startMonth+1, startYear), mode);
+		this.daily = RequestData.getDefaultProvider().fetch(id, 'd', from, EpochDay.of(endDay, endMonth+1, endYear));
+		this.series = this.getSeries(mode);
+		this.mode = mode;
 	}
 	
 	
 	
 	// Commands
 	private void reset(){
-		this.open = new TreeMap<Date, BigDecimal>();
-		this.high = new TreeMap<Date, BigDecimal>();
-		this.low = new TreeMap<Date, BigDecimal>();
-		this.close = new TreeMap<Date, BigDecimal>();
-		this.volume = new TreeMap<Date, Long>();
-		this.adjClose = new TreeMap<Date, BigDecimal>();
-	}
-	
-	/**
-	 * Processes the given data into the data model
-	 * @param data
-	 */
-	private void processData(List<String> data){
-		this.rawData = data;
-		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-		for(String line: data){
-			String[] col = line.split(",");
-			// Filter the name row
-			if(!col[0].equals("") && !col[0].equals("Date")){
-				try {
-					Date datum = df.parse(col[0]);
-					this.open.put(datum, new BigDecimal(col[1]));
-					this.high.put(datum, new BigDecimal(col[2]));
-					this.low.put(datum, new BigDecimal(col[3]));
-					this.close.put(datum, new BigDecimal(col[4]));
-					this.volume.put(datum, Long.parseLong(col[5]));
-					this.adjClose.put(datum, new BigDecimal(col[6]));
-				}
-				catch (ParseException e) { System.err.println("Kon de datum '" + col[0] + "' niet parsen"); }
-			}
-		}
+		this.series = new PriceSeries();
+		this.daily = this.series;
+		this.bars = null;
+		this.mode = 'd';
 	}
 	
 	/**
-	 * Nederlandse CSV's hebben een andere structuur dan de standaard CSV, deze methode past dit aan voordat de data
-	 * naar processData wordt gestuurd.
-	 * @param data De CSV data.
+	 * Saves the current data as binary snapshot to the given file, it can be loaded again with Data.load.
+	 * @param file The filepath and name to which the data should be saved
 	 */
-	private void processDataCSV(List<String> data){
-		ArrayList<String> newFormat = new ArrayList<String>();
-		for(String s: data){
-			s = s.replace(",", ".");
-			s = s.replace(";", ",");
-			newFormat.add(s);
+	public synchronized void save(String file){
+		try {
+			SeriesSnapshot.write(this.series, Paths.get(file));
 		}
-		processData(newFormat);
+		catch (IOException e) { System.err.println("Het bestand '" + file + "' kon niet geschreven worden"); e.printStackTrace(); }
 	}
 	
 	/**
-	 * Saves the current data in csv format to the given file
+	 * Saves the current data in Dutch csv format to the given file
 	 * @param file The filepath and name to which the data should be saved
 	 */
-	public void save(String file){
-		// Convert List<String> to a single string
-		String d = "";
-		for(String s: this.rawData){
-			d += s + "\n";
-		}
-		
-		PrintWriter p;
-		try {
-			// Transform string to Dutch CSV format
-			d = d.replace(',', ';');
-			d = d.replace('.', ',');
-			
-			// Save string to CSV file
-			p = new PrintWriter(new File(file));
-			p.println(d);
-			p.close();
+	public synchronized void exportCSV(String file){
+		try (Writer w = Files.newBufferedWriter(Paths.get(file), StandardCharsets.ISO_8859_1)) {
+			w.write("Date;Open;High;Low;Close;Volume;Adj Close\n");
+			// Newest day first, like Yahoo Finance
+			for(int i = this.series.size()-1; i >= 0; i--){
+				w.write(EpochDay.toLocalDate(this.series.getDay(i)).toString());
+				Data.writeDutch(w, this.series.getOpen(i));
+				Data.writeDutch(w, this.series.getHigh(i));
+				Data.writeDutch(w, this.series.getLow(i));
+				Data.writeDutch(w, this.series.getClose(i));
+				w.write(';');
+				w.write(Long.toString(this.series.getVolume(i)));
+				Data.writeDutch(w, this.series.getAdjClose(i));
+				w.write('\n');
+			}
 		}
-		catch (FileNotFoundException e) { e.printStackTrace(); }
+		catch (IOException e) { System.err.println("Het bestand '" + file + "' kon niet geschreven worden"); e.printStackTrace(); }
+	}
+	
+	private static void writeDutch(Writer w, double value) throws IOException{
+		w.write(';');
+		w.write(BigDecimal.valueOf(value).toPlainString().replace('.', ','));
+	}
+	
+	/**
+	 * Loads data which has been saved with save
+	 * @param file The snapshot file
+	 * @return The loaded data
+	 * @throws IOException If the file can't be read or isn't a snapshot
+	 */
+	public static Data load(String file) throws IOException{
+		return new Data(SeriesSnapshot.read(Paths.get(file)));
 	}
 	
 	
 	// Queries
+	/**
+	 * @return The columnar series backing this data
+	 */
+	public PriceSeries getSeries(){
+		return this.series;
+	}
+	
+	/**
+	 * The bars of other intervals are resampled from the daily rows once and kept, see Resampler.
+	 * @param mode The interval of the rows (d=Day, w=Week, m=Month, y=Year)
+	 * @return The series of the given interval
+	 * @throws IllegalArgumentException If the mode is unknown
+	 */
+	public synchronized PriceSeries getSeries(char mode){
+		if(mode == 'd'){
+			return this.daily;
+		}
+		int i = mode == 'w' ? 0 : mode == 'm' ? 1 : mode == 'y' ? 2 : -1;
+		if(i < 0){
+			throw new IllegalArgumentException("Onbekend interval '" + mode + "'");
+		}
+		if(this.bars == null){
+			this.bars = new PriceSeries[3];
+		}
+		if(this.bars[i] == null){
+			this.bars[i] = Resampler.resample(this.daily, mode);
+		}
+		return this.bars[i];
+	}
+	
+	/**
+	 * The slice shares the daily rows of this data instead of copying them, see PriceSeries.slice.
+	 * Weekly, monthly and yearly bars of the slice, including getSeries() when this data has another interval than
+	 * days, are resampled from its own days. The bar of the period containing from only holds the days from from on,
+	 * and is dated on the first day of that period like every bar.
+	 * @param from The first epoch day
+	 * @param to The last epoch day
+	 * @return A view on the days from up to and including to, with the interval of this data
+	 */
+	public Data slice(int from, int to){
+		return new Data(this.daily.slice(from, to), this.mode);
+	}
+	
 	/**
 	 * @return Map with the opening prices
 	 */
-	public TreeMap<Date, BigDecimal> getOpen(){
-		return this.open;
+	public SortedMap<Date, BigDecimal> getOpen(){
+		return new SeriesMap<BigDecimal>(this.series, i -> BigDecimal.valueOf(this.series.getOpen(i)));
 	}
 	
 	/**
@@ -171,14 +205,15 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public BigDecimal getOpen(Date d){
-		return this.open.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : BigDecimal.valueOf(this.series.getOpen(i));
 	}
 	
 	/**
 	 * @return Map with the highest prices
 	 */
-	public TreeMap<Date, BigDecimal> getHigh(){
-		return this.high;
+	public SortedMap<Date, BigDecimal> getHigh(){
+		return new SeriesMap<BigDecimal>(this.series, i -> BigDecimal.valueOf(this.series.getHigh(i)));
 	}
 	
 	/**
@@ -186,14 +221,15 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public BigDecimal getHigh(Date d){
-		return this.high.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : BigDecimal.valueOf(this.series.getHigh(i));
 	}
 	
 	/**
 	 * @return Map with the lowest prices
 	 */
-	public TreeMap<Date, BigDecimal> getLow(){
-		return this.low;
+	public SortedMap<Date, BigDecimal> getLow(){
+		return new SeriesMap<BigDecimal>(this.series, i -> BigDecimal.valueOf(this.series.getLow(i)));
 	}
 	
 	/**
@@ -201,14 +237,15 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public BigDecimal getLow(Date d){
-		return this.low.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : BigDecimal.valueOf(this.series.getLow(i));
 	}
 	
 	/**
 	 * @return Map with the closing prices
 	 */
-	public TreeMap<Date, BigDecimal> getClose(){
-		return this.close;
+	public SortedMap<Date, BigDecimal> getClose(){
+		return new SeriesMap<BigDecimal>(this.series, i -> BigDecimal.valueOf(this.series.getClose(i)));
 	}
 	
 	/**
@@ -216,14 +253,15 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public BigDecimal getClose(Date d){
-		return this.close.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : BigDecimal.valueOf(this.series.getClose(i));
 	}
 	
 	/**
 	 * @return Map with the traded volume
 	 */
-	public TreeMap<Date, Long> getVolume(){
-		return this.volume;
+	public SortedMap<Date, Long> getVolume(){
+		return new SeriesMap<Long>(this.series, i -> this.series.getVolume(i));
 	}
 	
 	/**
@@ -231,14 +269,15 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public Long getVolume(Date d){
-		return this.volume.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : this.series.getVolume(i);
 	}
 	
 	/**
 	 * @return Map with the adjusted closing prices
 	 */
-	public TreeMap<Date, BigDecimal> getAdjClose(){
-		return this.adjClose;
+	public SortedMap<Date, BigDecimal> getAdjClose(){
+		return new SeriesMap<BigDecimal>(this.series, i -> BigDecimal.valueOf(this.series.getAdjClose(i)));
 	}
 	
 	/**
@@ -246,6 +285,7 @@ public class Data {
 	 * @return The opening price on the given day
 	 */
 	public BigDecimal getAdjClose(Date d){
-		return this.adjClose.get(d);
+		int i = this.series.indexOf(EpochDay.of(d));
+		return i < 0 ? null : BigDecimal.valueOf(this.series.getAdjClose(i));
 	}
 }
\ No newline at end of file
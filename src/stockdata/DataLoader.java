@@ -0,0 +1,36 @@
+package stockdata;
+
+import java.io.IOException;
+
+/**
+ * Source of the stock data of companies and markets.
+ * @author Aeilko Bos
+ */
+public interface DataLoader {
+	/**
+	 * Loads the stock data of the given company in the given interval.
+	 * @param id The ID of the company.
+	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
+	 * @param from The first epoch day.
+	 * @param to The last epoch day.
+	 * @return The stock data
+	 * @throws IOException If the stock data is not available.
+	 */
+	public Data load(String id, char mode, int from, int to) throws IOException;
+	
+	/**
+	 * Loads the estimation window and the event window of an event at once.
+	 * Both windows are slices of the same loaded data, so the days are fetched and parsed once.
+	 * @param id The ID of the company.
+	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
+	 * @param from The first epoch day of the estimation window.
+	 * @param event The epoch day of the event, the last day of the estimation window and the first of the event window.
+	 * @param to The last epoch day of the event window.
+	 * @return The estimation window and the event window
+	 * @throws IOException If the stock data is not available.
+	 */
+	public default Data[] loadWindows(String id, char mode, int from, int event, int to) throws IOException{
+		Data data = this.load(id, mode, from, to);
+		return new Data[]{ data.slice(from, event), data.slice(event, to) };
+	}
+}
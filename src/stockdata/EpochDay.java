@@ -0,0 +1,131 @@
+package stockdata;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Conversions between the dates used throughout the program and epoch days.
+ * An epoch day is the number of days since 1-1-1970, which allows days to be stored as a primitive int.
+ * @author Aeilko Bos
+ */
+public final class EpochDay {
+	// Date format of the events (dd-MM-yyyy), formatters are immutable so they can be shared between threads
+	public static final DateTimeFormatter DMY = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+	// Date format of the exported file names (yyyyMMdd)
+	public static final DateTimeFormatter BASIC = DateTimeFormatter.BASIC_ISO_DATE;
+
+	private EpochDay(){	}
+
+
+	// Queries
+	/**
+	 * @param d The date, only the day in the default time zone is used.
+	 * @return The epoch day of the given date
+	 */
+	public static int of(Date d){
+		return (int) d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+	}
+
+	/**
+	 * @param day The day of the month.
+	 * @param month The month (1-12).
+	 * @param year The year.
+	 * @return The epoch day of the given date
+	 */
+	public static int of(int day, int month, int year){
+		return (int) LocalDate.of(year, month, day).toEpochDay();
+	}
+
+	/**
+	 * Parses a date in the d-M-yyyy format, anything after the year (like a time) is ignored.
+	 * @param s The date
+	 * @return The epoch day of the given date
+	 * @throws DateTimeParseException If the date isn't in the right format
+	 */
+	public static int parseDMY(CharSequence s){
+		int[] pos = { 0 };
+		int day = EpochDay.number(s, pos, 1, 2, '-');
+		int month = EpochDay.number(s, pos, 1, 2, '-');
+		int year = EpochDay.number(s, pos, 4, 4, (char) 0);
+		return EpochDay.of(s, day, month, year);
+	}
+
+	/**
+	 * Parses a date in the yyyy-MM-dd format (ISO 8601), anything after the day (like a time) is ignored.
+	 * @param s The date
+	 * @return The epoch day of the given date
+	 * @throws DateTimeParseException If the date isn't in the right format
+	 */
+	public static int parseISO(CharSequence s){
+		int[] pos = { 0 };
+		int year = EpochDay.number(s, pos, 4, 4, '-');
+		int month = EpochDay.number(s, pos, 1, 2, '-');
+		int day = EpochDay.number(s, pos, 1, 2, (char) 0);
+		return EpochDay.of(s, day, month, year);
+	}
+
+	/**
+	 * Parses a date in the yyyy-MM-dd or the d-M-yyyy format
+	 * @param s The date
+	 * @return The epoch day of the given date
+	 * @throws DateTimeParseException If the date isn't in one of the formats
+	 */
+	public static int parse(CharSequence s){
+		boolean iso = s.length() > 4 && s.charAt(4) == '-';
+		for(int i = 0; i < 4 && iso; i++){
+			iso = s.charAt(i) >= '0' && s.charAt(i) <= '9';
+		}
+		return iso ? EpochDay.parseISO(s) : EpochDay.parseDMY(s);
+	}
+
+	/**
+	 * Reads a number of min up to max digits starting at pos[0], followed by the given separator (0 for none)
+	 */
+	private static int number(CharSequence s, int[] pos, int min, int max, char separator){
+		int i = pos[0], n = s.length(), value = 0;
+		while(i < n && i - pos[0] < max && s.charAt(i) >= '0' && s.charAt(i) <= '9'){
+			value = value*10 + (s.charAt(i++) - '0');
+		}
+		boolean more = i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9';
+		if(i - pos[0] < min || more || (separator != 0 && (i >= n || s.charAt(i++) != separator))){
+			throw new DateTimeParseException("Invalid date '" + s + "'", s, Math.min(i, n));
+		}
+		pos[0] = i;
+		return value;
+	}
+
+	private static int of(CharSequence s, int day, int month, int year){
+		try{
+			return EpochDay.of(day, month, year);
+		}
+		catch(DateTimeException e){ throw new DateTimeParseException("Invalid date '" + s + "'", s, 0, e); }
+	}
+
+	/**
+	 * @param epochDay The epoch day
+	 * @return The given day in the dd-MM-yyyy format
+	 */
+	public static String formatDMY(int epochDay){
+		return LocalDate.ofEpochDay(epochDay).format(DMY);
+	}
+
+	/**
+	 * @param epochDay The epoch day
+	 * @return The start of the given day in the default time zone
+	 */
+	public static Date toDate(int epochDay){
+		return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+
+	/**
+	 * @param epochDay The epoch day
+	 * @return The given day as a LocalDate
+	 */
+	public static LocalDate toLocalDate(int epochDay){
+		return LocalDate.ofEpochDay(epochDay);
+	}
+}
@@ -0,0 +1,548 @@
+package stockdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single file containing the daily stock data of many companies, memory-mapped for reading.
+ *
+ * The file starts with a 16 byte header: magic (4), version (2) and reserved bytes, followed by segments.
+ * A segment holds rows of one company: marker (4), number of rows (4), the first and last epoch day of the
+ * interval the segment covers (4 + 4), the length of the UTF-8 ID (2) and the ID, padded to a multiple of 8 bytes.
+ * The columns follow in the order day (int), open, high, low, close (double), volume (long) and adjusted close
+ * (double), every column starts at a multiple of 8 bytes. The days of a segment are sorted, all values are little endian.
+ *
+ * The file is append-only: new days of a company are written as a new segment at the end of the file, existing
+ * bytes are never changed, so a mapping taken before an append stays valid. A segment with the reset marker replaces
+ * the earlier segments of its company, it is written by rebase() when the vendor adjusted the earlier prices. The index of the segments per company
+ * is built on opening by jumping from segment header to segment header. A last segment which was cut off by a crash
+ * is removed on opening, a file with unreadable data before its end isn't opened. compact() rewrites the file with
+ * one segment per covered interval of a company, which is one segment per company unless days in between were never loaded.
+ *
+ * An open store holds an exclusive lock on its file, so only one process at a time reads and writes it.
+ * @author Aeilko Bos
+ */
+public class HistoryStore {
+	// "SDTH"
+	private static final int MAGIC = 0x53445448;
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	// "SEG1"
+	private static final int SEGMENT_MARKER = 0x53454731;
+	// "SEGR", a segment which replaces the earlier segments of the company
+	private static final int RESET_MARKER = 0x53454752;
+	// Relative difference of the prices of a day above which the vendor adjusted them, below it is rounding
+	private static final double REBASE_TOLERANCE = 1e-5;
+
+	// The file of the store
+	private final Path file;
+	// Open for appending
+	private FileChannel channel;
+	// Exclusive lock on the file, released when the channel is closed
+	private FileLock lock;
+	// Mapping of the whole file
+	private MappedByteBuffer map;
+	// The segments of every company, in the order they were written
+	private final Map<String, List<Segment>> index;
+
+	/**
+	 * Position of one segment in the file
+	 */
+	private static class Segment {
+		// Offset of the day column in the file
+		final int data;
+		// Number of rows
+		final int rows;
+		// The interval of the segment, days in it without a row are days on which the exchange was closed
+		final int from;
+		final int to;
+
+		Segment(int data, int rows, int from, int to){
+			this.data = data;
+			this.rows = rows;
+			this.from = from;
+			this.to = to;
+		}
+
+		// Offset of the given column after the day column (0 = open ... 5 = adjusted close)
+		int column(int c){
+			return this.data + (int) align(4L * this.rows) + 8 * c * this.rows;
+		}
+	}
+
+	/**
+	 * Read-only views of the columns of a segment, the views share the memory of the mapped file
+	 */
+	public static class Columns {
+		public final IntBuffer days;
+		public final DoubleBuffer open;
+		public final DoubleBuffer high;
+		public final DoubleBuffer low;
+		public final DoubleBuffer close;
+		public final LongBuffer volume;
+		public final DoubleBuffer adjClose;
+
+		private Columns(ByteBuffer map, Segment s){
+			this.days = view(map, s.data, 4 * s.rows).asIntBuffer();
+			this.open = view(map, s.column(0), 8 * s.rows).asDoubleBuffer();
+			this.high = view(map, s.column(1), 8 * s.rows).asDoubleBuffer();
+			this.low = view(map, s.column(2), 8 * s.rows).asDoubleBuffer();
+			this.close = view(map, s.column(3), 8 * s.rows).asDoubleBuffer();
+			this.volume = view(map, s.column(4), 8 * s.rows).asLongBuffer();
+			this.adjClose = view(map, s.column(5), 8 * s.rows).asDoubleBuffer();
+		}
+	}
+
+
+	// Constructor
+	/**
+	 * Opens the given store, it is created when it doesn't exist
+	 * @param file The file of the store
+	 * @throws IOException If the file can't be opened, is opened by another process or isn't a readable store
+	 */
+	public HistoryStore(Path file) throws IOException{
+		this.file = file;
+		this.index = new LinkedHashMap<String, List<Segment>>();
+		this.open();
+	}
+
+
+	// Commands
+	private void open() throws IOException{
+		if(this.file.getParent() != null){
+			Files.createDirectories(this.file.getParent());
+		}
+		this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try{
+			this.lock = this.channel.tryLock();
+		}
+		catch(OverlappingFileLockException e){
+			// Already opened in this process
+			this.lock = null;
+		}
+		if(this.lock == null){
+			this.channel.close();
+			throw new IOException("'" + this.file + "' is al geopend door een ander proces");
+		}
+		if(this.channel.size() == 0){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putShort(VERSION);
+			header.clear();
+			this.write(header, 0);
+		}
+		this.remap();
+		if(this.map.capacity() < HEADER_SIZE || this.map.getInt(0) != MAGIC || this.map.getShort(4) != VERSION){
+			this.channel.close();
+			throw new IOException("'" + this.file + "' is geen history store");
+		}
+
+		// Build the index
+		int end = this.map.capacity();
+		int pos = HEADER_SIZE;
+		while(pos < end){
+			int marker = end - pos < 18 ? 0 : this.map.getInt(pos);
+			if(marker != SEGMENT_MARKER && marker != RESET_MARKER){
+				break;
+			}
+			int rows = this.map.getInt(pos + 4);
+			int idLength = this.map.getShort(pos + 16) & 0xFFFF;
+			int data = (int) align(pos + 18 + idLength);
+			long next = data + segmentSize(rows);
+			if(rows < 0 || next > end){
+				break;
+			}
+			byte[] id = new byte[idLength];
+			this.map.get(pos + 18, id);
+			List<Segment> segments = this.index.computeIfAbsent(new String(id, StandardCharsets.UTF_8), k -> new ArrayList<Segment>());
+			if(marker == RESET_MARKER){
+				segments.clear();
+			}
+			segments.add(new Segment(data, rows, this.map.getInt(pos + 8), this.map.getInt(pos + 12)));
+			pos = (int) next;
+		}
+		if(pos < end){
+			// Only the last segment can be incomplete, an append which was cut off leaves a header which is too short
+			// or a segment which runs past the end of the file
+			boolean cutOff = end - pos < 18 || ((this.map.getInt(pos) == SEGMENT_MARKER || this.map.getInt(pos) == RESET_MARKER) && this.map.getInt(pos + 4) >= 0);
+			if(!cutOff){
+				this.channel.close();
+				this.map = null;
+				throw new IOException("'" + this.file + "' is beschadigd op positie " + pos);
+			}
+			System.err.println("Onvolledig segment in '" + this.file + "' verwijderd");
+			this.channel.truncate(pos);
+			this.remap();
+		}
+	}
+
+	/**
+	 * Appends the rows of the given series to the store, rows of days which are already covered by the store are skipped.
+	 * @param id The ID of the company
+	 * @param series The rows, sorted on day
+	 * @param from The first day of the interval the series covers
+	 * @param to The last day of the interval the series covers, days after the last row are stored as closed days
+	 * @throws IOException If the segment can't be written
+	 */
+	public synchronized void append(String id, PriceSeries series, int from, int to) throws IOException{
+		int[] ranges = this.getRanges(id);
+		if(PriceCache.gaps(ranges, from, to).isEmpty()){
+			return;
+		}
+		this.writeSegment(SEGMENT_MARKER, id, series, from, to, ranges);
+	}
+
+	/**
+	 * Brings the stored rows of a company to the adjustment basis of newly fetched rows.
+	 * Vendors adjust the prices before a split or dividend afterwards, so rows fetched now can have another basis than
+	 * the stored rows and appending them would give a jump in the returns. The prices of a day which is in the store
+	 * and in the series are compared, when they differ every stored row of the company is rescaled with their ratio
+	 * and written again, replacing the earlier segments. New rows are rebased on before they are appended, so the stored
+	 * rows of a company share one basis and one ratio rescales all of them. The adjusted close and the other prices are compared
+	 * separately, vendors differ in which of them they adjust.
+	 * If the process stops while the rows are written again, the intervals which weren't written yet aren't covered anymore.
+	 * @param id The ID of the company
+	 * @param series The fetched rows, sorted on day
+	 * @param day The day which is compared
+	 * @return Whether the stored rows were rescaled, false if they have the same basis or the day isn't in both
+	 * @throws IOException If the rescaled rows can't be written
+	 */
+	public synchronized boolean rebase(String id, PriceSeries series, int day) throws IOException{
+		PriceSeries stored = this.get(id, day, day);
+		int i = series.indexOf(day);
+		if(stored.size() == 0 || i < 0){
+			return false;
+		}
+		double adjFactor = series.getAdjClose(i) / stored.getAdjClose(0);
+		double priceFactor = series.getClose(i) / stored.getClose(0);
+		if(!(adjFactor > 0 && priceFactor > 0) || Double.isInfinite(adjFactor) || Double.isInfinite(priceFactor)
+				|| (Math.abs(adjFactor - 1) <= REBASE_TOLERANCE && Math.abs(priceFactor - 1) <= REBASE_TOLERANCE)){
+			return false;
+		}
+
+		int[] ranges = this.getRanges(id);
+		PriceSeries rows = this.get(id, ranges[0], ranges[ranges.length-1]);
+		PriceSeries rescaled = new PriceSeries(rows.size());
+		for(int r = 0; r < rows.size(); r++){
+			rescaled.add(rows.getDay(r), rows.getOpen(r) * priceFactor, rows.getHigh(r) * priceFactor, rows.getLow(r) * priceFactor,
+					rows.getClose(r) * priceFactor, Math.round(rows.getVolume(r) / priceFactor), rows.getAdjClose(r) * adjFactor);
+		}
+		this.writeSegment(RESET_MARKER, id, rescaled, ranges[0], ranges[1], new int[0]);
+		for(int r = 2; r < ranges.length; r += 2){
+			this.append(id, rescaled, ranges[r], ranges[r+1]);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a segment with the rows of the given interval which aren't covered yet
+	 */
+	private void writeSegment(int marker, String id, PriceSeries series, int from, int to, int[] ranges) throws IOException{
+		int[] rows = new int[series.size()];
+		int n = 0;
+		for(int i = series.ceilingIndex(from); i < series.size() && series.getDay(i) <= to; i++){
+			if(!covered(ranges, series.getDay(i))){
+				rows[n++] = i;
+			}
+		}
+
+		byte[] name = id.getBytes(StandardCharsets.UTF_8);
+		int headerSize = (int) align(18 + name.length);
+		ByteBuffer b = ByteBuffer.allocate(headerSize + (int) segmentSize(n)).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(marker).putInt(n).putInt(from).putInt(to).putShort((short) name.length).put(name);
+		b.position(headerSize);
+		for(int i = 0; i < n; i++){
+			b.putInt(series.getDay(rows[i]));
+		}
+		b.position(headerSize + (int) align(4L * n));
+		for(int i = 0; i < n; i++){ b.putDouble(series.getOpen(rows[i])); }
+		for(int i = 0; i < n; i++){ b.putDouble(series.getHigh(rows[i])); }
+		for(int i = 0; i < n; i++){ b.putDouble(series.getLow(rows[i])); }
+		for(int i = 0; i < n; i++){ b.putDouble(series.getClose(rows[i])); }
+		for(int i = 0; i < n; i++){ b.putLong(series.getVolume(rows[i])); }
+		for(int i = 0; i < n; i++){ b.putDouble(series.getAdjClose(rows[i])); }
+		b.flip();
+
+		long offset = this.channel.size();
+		if(offset + b.remaining() > Integer.MAX_VALUE){
+			throw new IOException("'" + this.file + "' is groter dan 2 GB");
+		}
+		this.write(b, offset);
+		this.channel.force(false);
+		this.remap();
+		List<Segment> segments = this.index.computeIfAbsent(id, k -> new ArrayList<Segment>());
+		if(marker == RESET_MARKER){
+			segments.clear();
+		}
+		segments.add(new Segment((int) offset + headerSize, n, from, to));
+	}
+
+	/**
+	 * Rewrites the store with a single segment per covered interval of every company, adjacent appends are merged.
+	 * Reading an interval without gaps is a single slice afterwards.
+	 * The old and the new file stay locked while the new file replaces the old one, so no other process can open
+	 * the old file in between and append to it after it was replaced.
+	 * @throws IOException If the store can't be rewritten, the store is unchanged and open in that case
+	 */
+	public synchronized void compact() throws IOException{
+		Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+		Files.deleteIfExists(tmp);
+		HistoryStore compacted = new HistoryStore(tmp);
+		boolean moved = false;
+		try{
+			for(String id: this.index.keySet()){
+				int[] ranges = this.getRanges(id);
+				if(ranges.length == 0){
+					continue;
+				}
+				PriceSeries series = this.get(id, ranges[0], ranges[ranges.length-1]);
+				// The closed days between the covered intervals aren't known, these are written as separate segments
+				for(int i = 0; i < ranges.length; i += 2){
+					compacted.append(id, series, ranges[i], ranges[i+1]);
+				}
+			}
+			Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		}
+		finally{
+			if(!moved){
+				compacted.close();
+				Files.deleteIfExists(tmp);
+			}
+		}
+		// Continue with the channel, lock and index of the compacted file
+		this.close();
+		this.channel = compacted.channel;
+		this.lock = compacted.lock;
+		this.map = compacted.map;
+		this.index.clear();
+		this.index.putAll(compacted.index);
+	}
+
+	/**
+	 * Closes the file and releases its lock, the store can't be used afterwards
+	 */
+	public synchronized void close(){
+		try{
+			this.channel.close();
+		}
+		catch(IOException e){ System.err.println("Can't close '" + this.file + "'"); }
+		this.map = null;
+	}
+
+	private void write(ByteBuffer b, long offset) throws IOException{
+		while(b.hasRemaining()){
+			offset += this.channel.write(b, offset);
+		}
+	}
+
+	private void remap() throws IOException{
+		this.map = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+		this.map.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+
+	// Queries
+	/**
+	 * @param id The ID of the company
+	 * @param from The first epoch day
+	 * @param to The last epoch day
+	 * @return The stored rows of the given interval, read with a bulk copy per column of the mapped file
+	 */
+	public synchronized PriceSeries get(String id, int from, int to){
+		List<Segment> segments = this.index.getOrDefault(id, Collections.emptyList());
+		int[] first = new int[segments.size()];
+		int[] count = new int[segments.size()];
+		int n = 0;
+		boolean sorted = true;
+		int last = Integer.MIN_VALUE;
+		for(int s = 0; s < segments.size(); s++){
+			Segment segment = segments.get(s);
+			first[s] = this.search(segment, from);
+			count[s] = this.search(segment, to + 1) - first[s];
+			if(count[s] > 0){
+				sorted &= this.map.getInt(segment.data + 4 * first[s]) > last;
+				last = this.map.getInt(segment.data + 4 * (first[s] + count[s] - 1));
+			}
+			n += count[s];
+		}
+
+		int[] days = new int[n];
+		double[][] prices = new double[6][];
+		for(int c = 0; c < 6; c++){
+			prices[c] = c == 4 ? null : new double[n];
+		}
+		long[] volume = new long[n];
+		int pos = 0;
+		for(int s = 0; s < segments.size(); s++){
+			if(count[s] == 0){
+				continue;
+			}
+			Segment segment = segments.get(s);
+			view(this.map, segment.data + 4 * first[s], 4 * count[s]).asIntBuffer().get(days, pos, count[s]);
+			for(int c = 0; c < 6; c++){
+				ByteBuffer column = view(this.map, segment.column(c) + 8 * first[s], 8 * count[s]);
+				if(c == 4){
+					column.asLongBuffer().get(volume, pos, count[s]);
+				}
+				else{
+					column.asDoubleBuffer().get(prices[c], pos, count[s]);
+				}
+			}
+			pos += count[s];
+		}
+		PriceSeries series = new PriceSeries(days, prices[0], prices[1], prices[2], prices[3], volume, prices[5], n);
+		if(!sorted){
+			// Segments of older days were appended after newer ones, the series is created as unsorted
+			PriceSeries result = new PriceSeries(n);
+			result.addAll(series);
+			result.sort();
+			return result;
+		}
+		return series;
+	}
+
+	/**
+	 * @param id The ID of the company
+	 * @return Zero-copy views of the segments of the company in the order they were written, every segment is sorted on day
+	 */
+	public synchronized List<Columns> segments(String id){
+		List<Columns> result = new ArrayList<Columns>();
+		for(Segment s: this.index.getOrDefault(id, Collections.emptyList())){
+			result.add(new Columns(this.map, s));
+		}
+		return result;
+	}
+
+	/**
+	 * @param id The ID of the company
+	 * @return The intervals covered by the store as (first, last) epoch day pairs, sorted and not overlapping
+	 */
+	public synchronized int[] getRanges(String id){
+		int[] ranges = new int[0];
+		for(Segment s: this.index.getOrDefault(id, Collections.emptyList())){
+			ranges = PriceCache.addRange(ranges, s.from, s.to);
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param id The ID of the company
+	 * @return The last day with a row in the store, Integer.MIN_VALUE if there is none
+	 */
+	public int getLastDay(String id){
+		return this.getLastDay(id, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param id The ID of the company
+	 * @param day The epoch day
+	 * @return The last day on or before the given day with a row in the store, Integer.MIN_VALUE if there is none
+	 */
+	public synchronized int getLastDay(String id, int day){
+		int last = Integer.MIN_VALUE;
+		for(Segment s: this.index.getOrDefault(id, Collections.emptyList())){
+			int i = day == Integer.MAX_VALUE ? s.rows : this.search(s, day + 1);
+			if(i > 0){
+				last = Math.max(last, this.map.getInt(s.data + 4 * (i - 1)));
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * @param id The ID of the company
+	 * @param day The epoch day
+	 * @return The first day on or after the given day with a row in the store, Integer.MAX_VALUE if there is none
+	 */
+	public synchronized int getFirstDay(String id, int day){
+		int first = Integer.MAX_VALUE;
+		for(Segment s: this.index.getOrDefault(id, Collections.emptyList())){
+			int i = this.search(s, day);
+			if(i < s.rows){
+				first = Math.min(first, this.map.getInt(s.data + 4 * i));
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * @return The number of segments of all companies
+	 */
+	public synchronized int getSegmentCount(){
+		int count = 0;
+		for(List<Segment> segments: this.index.values()){
+			count += segments.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return The IDs of the companies in the store, in the order they were first written
+	 */
+	public synchronized Set<String> getIds(){
+		return Collections.unmodifiableSet(this.index.keySet());
+	}
+
+	/**
+	 * @return The file of the store
+	 */
+	public Path getFile(){
+		return this.file;
+	}
+
+	/**
+	 * @return The index of the first row of the segment with a day on or after the given day
+	 */
+	private int search(Segment s, int day){
+		int lo = 0;
+		int hi = s.rows;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(this.map.getInt(s.data + 4 * mid) < day){
+				lo = mid + 1;
+			}
+			else{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static boolean covered(int[] ranges, int day){
+		int i = Arrays.binarySearch(ranges, day);
+		// Inside a (first, last) pair when the insertion point is odd, or on one of the bounds
+		return i >= 0 || ((-i - 1) & 1) == 1;
+	}
+
+	private static ByteBuffer view(ByteBuffer map, int offset, int length){
+		return map.duplicate().position(offset).limit(offset + length).slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static long segmentSize(int rows){
+		return align(4L * rows) + 6 * 8L * rows;
+	}
+
+	private static long align(long position){
+		return (position + 7) & ~7L;
+	}
+}
@@ -0,0 +1,266 @@
+package stockdata;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads stock data over HTTP with a single shared client, so connections are reused (HTTP/2 when the server supports it).
+ * Requests have timeouts, failed requests (connection errors, 429 and 5xx) are retried with exponential backoff,
+ * and the number of requests running at the same time is bounded.
+ *
+ * The URL is made from a template with the placeholders {id}, {mode}, {startDay}, {startMonth}, {startYear},
+ * {endDay}, {endMonth}, {endYear} (months start at 0, like the Yahoo Finance ichart API), {from} and {to}
+ * (ISO dates) and {period1} and {period2} (epoch seconds). The id is URL encoded, indices like ^NYA become %5ENYA.
+ * @author Aeilko Bos
+ */
+public class HttpPriceProvider implements PriceProvider {
+	// URL of the Yahoo Finance ichart API
+	public static final String YAHOO_ICHART = "http://ichart.yahoo.com/table.csv?s={id}&a={startMonth}&b={startDay}&c={startYear}&d={endMonth}&e={endDay}&f={endYear}&g={mode}&ignore=.csv";
+
+	// Delay before the first retry, doubles for every next retry
+	private static final long BACKOFF_MILLIS = 500;
+	private static final long MAX_BACKOFF_MILLIS = 10000;
+
+	// The shared client
+	private final HttpClient client;
+	// The URL template
+	private final String template;
+	// Maximum duration of a request
+	private final Duration requestTimeout;
+	// Number of retries of a failed request
+	private final int retries;
+	// Maximum number of requests at the same time
+	private final int maxConcurrent;
+
+	// Number of running requests
+	private int running;
+	// Requests waiting for a running request to finish
+	private final ArrayDeque<Runnable> waiting;
+
+
+	// Constructor
+	/**
+	 * @param template The URL template
+	 * @param connectTimeout Maximum duration of setting up a connection
+	 * @param requestTimeout Maximum duration of a request until the response headers are received
+	 * @param retries Number of retries of a failed request
+	 * @param maxConcurrent Maximum number of requests at the same time, a request lasts until its stream is closed
+	 */
+	public HttpPriceProvider(String template, Duration connectTimeout, Duration requestTimeout, int retries, int maxConcurrent){
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(connectTimeout)
+				.build();
+		this.template = template;
+		this.requestTimeout = requestTimeout;
+		this.retries = Math.max(retries, 0);
+		this.maxConcurrent = Math.max(maxConcurrent, 1);
+		this.running = 0;
+		this.waiting = new ArrayDeque<Runnable>();
+	}
+
+
+	// Commands
+	@Override
+	public InputStream open(String id, char mode, int from, int to) throws IOException {
+		return this.get(this.url(id, mode, from, to));
+	}
+
+	@Override
+	public CompletableFuture<InputStream> openAsync(String id, char mode, int from, int to){
+		return this.getAsync(this.url(id, mode, from, to));
+	}
+
+	/**
+	 * Requests the given URL
+	 * @param url The URL
+	 * @return The response body, the caller has to close it
+	 * @throws IOException If the request failed after all retries
+	 */
+	public InputStream get(String url) throws IOException{
+		try{
+			return this.getAsync(url).get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + url);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Request of " + url + " failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Requests the given URL without blocking
+	 * @param url The URL
+	 * @return The response body, completed exceptionally with an IOException if the request failed after all retries
+	 */
+	public CompletableFuture<InputStream> getAsync(String url){
+		CompletableFuture<InputStream> result = new CompletableFuture<InputStream>();
+		try{
+			HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+					.timeout(this.requestTimeout)
+					.header("User-Agent", "StockDataTool")
+					.GET()
+					.build();
+			this.attempt(request, 0, result);
+		}
+		catch(IllegalArgumentException e){
+			result.completeExceptionally(new IOException("Invalid URL '" + url + "'", e));
+		}
+		return result;
+	}
+
+	private void attempt(HttpRequest request, int attempt, CompletableFuture<InputStream> result){
+		Metrics.count(attempt == 0 ? Metrics.Counter.REQUESTS : Metrics.Counter.RETRIES, 1);
+		this.acquire(() -> this.client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).whenComplete((response, error) -> {
+			if(error != null){
+				this.release();
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				this.retryOrFail(request, attempt, result, cause instanceof IOException ? (IOException) cause : new IOException(cause));
+			}
+			else if(response.statusCode() == 200){
+				result.complete(new ReleasingInputStream(response.body()));
+			}
+			else{
+				try{
+					response.body().close();
+				}
+				catch(IOException e){ } // The body isn't used
+				this.release();
+				IOException e = new IOException("HTTP " + response.statusCode() + " for " + request.uri());
+				if(response.statusCode() == 429 || response.statusCode() >= 500){
+					this.retryOrFail(request, attempt, result, e);
+				}
+				else{
+					result.completeExceptionally(e);
+				}
+			}
+		}));
+	}
+
+	private void retryOrFail(HttpRequest request, int attempt, CompletableFuture<InputStream> result, IOException e){
+		if(attempt >= this.retries){
+			result.completeExceptionally(e);
+			return;
+		}
+		long delay = Math.min(BACKOFF_MILLIS << attempt, MAX_BACKOFF_MILLIS) + ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS / 2);
+		CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> this.attempt(request, attempt+1, result));
+	}
+
+	/**
+	 * Runs the given request as soon as less than maxConcurrent requests are running
+	 */
+	private void acquire(Runnable request){
+		synchronized(this.waiting){
+			if(this.running >= this.maxConcurrent){
+				this.waiting.add(request);
+				return;
+			}
+			this.running++;
+		}
+		request.run();
+	}
+
+	/**
+	 * Ends a running request and starts the next waiting one
+	 */
+	private void release(){
+		Runnable next;
+		synchronized(this.waiting){
+			next = this.waiting.poll();
+			if(next == null){
+				this.running--;
+			}
+		}
+		if(next != null){
+			next.run();
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The URL of the given request
+	 */
+	public String url(String id, char mode, int from, int to){
+		LocalDate start = EpochDay.toLocalDate(from);
+		LocalDate end = EpochDay.toLocalDate(to);
+		return this.template
+				.replace("{id}", URLEncoder.encode(id, StandardCharsets.UTF_8))
+				.replace("{mode}", String.valueOf(mode))
+				.replace("{startDay}", Integer.toString(start.getDayOfMonth()))
+				.replace("{startMonth}", Integer.toString(start.getMonthValue()-1))
+				.replace("{startYear}", Integer.toString(start.getYear()))
+				.replace("{endDay}", Integer.toString(end.getDayOfMonth()))
+				.replace("{endMonth}", Integer.toString(end.getMonthValue()-1))
+				.replace("{endYear}", Integer.toString(end.getYear()))
+				.replace("{from}", start.toString())
+				.replace("{to}", end.toString())
+				.replace("{period1}", Long.toString(start.atStartOfDay().toEpochSecond(ZoneOffset.UTC)))
+				.replace("{period2}", Long.toString(end.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC)));
+	}
+
+	/**
+	 * Response body which ends the request when it is closed
+	 */
+	private class ReleasingInputStream extends FilterInputStream {
+		private boolean closed = false;
+
+		ReleasingInputStream(InputStream in){
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException{
+			int b = super.read();
+			if(b >= 0){
+				Metrics.count(Metrics.Counter.BYTES_DOWNLOADED, 1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException{
+			int n = super.read(b, off, len);
+			if(n > 0){
+				Metrics.count(Metrics.Counter.BYTES_DOWNLOADED, n);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException{
+			try{
+				super.close();
+			}
+			finally{
+				if(!this.closed){
+					this.closed = true;
+					HttpPriceProvider.this.release();
+				}
+			}
+		}
+	}
+}
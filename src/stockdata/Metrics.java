@@ -0,0 +1,345 @@
+package stockdata;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and latency histograms of the stages an event goes through, enabled with -Dstockdata.metrics=true.
+ * The switches are read here instead of in program.Settings, so measuring the loaders and the parser doesn't
+ * initialise the settings of the application.
+ * ENABLED is a constant, so when the metrics are disabled the JIT removes the calls and they cost nothing.
+ *
+ * Usage on a hot path:
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.stop(Metrics.Stage.BETA, start);
+ *
+ * The histograms have 8 buckets for every power of two nanoseconds, so percentiles are within 12.5%.
+ * With -Dstockdata.jfr=true every measurement is also committed as a JFR event (stockdata.Stage), which is only
+ * recorded while a flight recording is running.
+ * @author Aeilko Bos
+ */
+public class Metrics {
+	// Whether measurements are kept (-Dstockdata.metrics=true)
+	public static final boolean ENABLED = Boolean.getBoolean("stockdata.metrics");
+	// Whether measurements are also committed as JFR events (-Dstockdata.jfr=true)
+	private static final boolean JFR = ENABLED && Boolean.getBoolean("stockdata.jfr");
+	// Interval of the summary on System.err in seconds, 0 for none (-Dstockdata.metricsInterval=s)
+	private static final int INTERVAL = Integer.getInteger("stockdata.metricsInterval", 10);
+	// File the metrics are written to as JSON at exit (-Dstockdata.metricsFile=file)
+	private static final String FILE = System.getProperty("stockdata.metricsFile", "metrics.json");
+
+	/**
+	 * The measured stages of an event
+	 */
+	public enum Stage {
+		// Loading all stock data of an event (fetch and parse, or the cache)
+		LOAD,
+		// Opening the stock data at the vendor, up to the first byte of the response
+		FETCH,
+		// Parsing a CSV response, includes reading the body of a streamed response
+		PARSE,
+		// Calculating the BETA of an event
+		BETA,
+		// Calculating the ERM and CAR of an event
+		CAR,
+		// Handing the result of an event to the log
+		WRITE,
+		// Writing buffered results to the file
+		FLUSH;
+	}
+
+	/**
+	 * The counted quantities
+	 */
+	public enum Counter {
+		EVENTS,
+		FAILED_EVENTS,
+		REQUESTS,
+		RETRIES,
+		BYTES_DOWNLOADED,
+		ROWS_PARSED,
+		CACHE_HITS,
+		CACHE_PARTIAL_HITS,
+		CACHE_MISSES,
+		BYTES_WRITTEN;
+	}
+
+	// Sub buckets per power of two
+	private static final int SUB_BITS = 3;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+
+	private static final Latency[] latencies = new Latency[Stage.values().length];
+	private static final LongAdder[] counters = new LongAdder[Counter.values().length];
+	static {
+		for(int i = 0; i < latencies.length; i++){
+			latencies[i] = new Latency();
+		}
+		for(int i = 0; i < counters.length; i++){
+			counters[i] = new LongAdder();
+		}
+	}
+
+	// Prints the summary periodically, if started
+	private static ScheduledExecutorService reporter;
+
+	private Metrics(){	}
+
+
+	// Commands
+	/**
+	 * @return The start time of a measurement, 0 if the metrics are disabled
+	 */
+	public static long start(){
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration of a stage
+	 * @param stage The stage
+	 * @param start The result of start() when the stage started
+	 */
+	public static void stop(Stage stage, long start){
+		if(ENABLED){
+			long nanos = System.nanoTime() - start;
+			latencies[stage.ordinal()].record(nanos);
+			if(JFR){
+				StageEvent event = new StageEvent();
+				if(event.isEnabled()){
+					event.stage = stage.name();
+					event.elapsed = nanos;
+					event.commit();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to a counter
+	 * @param counter The counter
+	 * @param n The amount
+	 */
+	public static void count(Counter counter, long n){
+		if(ENABLED){
+			counters[counter.ordinal()].add(n);
+		}
+	}
+
+	/**
+	 * Prints the summary to System.err every INTERVAL seconds, does nothing when the metrics are
+	 * disabled or the interval is 0.
+	 */
+	public static synchronized void startReporter(){
+		if(!ENABLED || INTERVAL <= 0 || reporter != null){
+			return;
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		reporter.scheduleAtFixedRate(() -> System.err.println(Metrics.summary()), INTERVAL, INTERVAL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops the periodic summary and writes the metrics as JSON to FILE, does nothing when the
+	 * metrics are disabled.
+	 */
+	public static synchronized void dump(){
+		if(!ENABLED){
+			return;
+		}
+		if(reporter != null){
+			reporter.shutdownNow();
+			reporter = null;
+		}
+		try{
+			Files.write(Paths.get(FILE), Metrics.toJSON().getBytes(StandardCharsets.UTF_8));
+		}
+		catch(IOException e){ System.err.println("Can't write metrics to '" + FILE + "'"); }
+	}
+
+	/**
+	 * Forgets all measurements
+	 */
+	public static void reset(){
+		for(Latency l: latencies){
+			l.reset();
+		}
+		for(LongAdder c: counters){
+			c.reset();
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @param counter The counter
+	 * @return The current value of the counter
+	 */
+	public static long get(Counter counter){
+		return counters[counter.ordinal()].sum();
+	}
+
+	/**
+	 * @return The share of cache lookups which didn't need a download, partial hits count as misses; NaN without lookups
+	 */
+	public static double getCacheHitRate(){
+		long hits = get(Counter.CACHE_HITS);
+		long total = hits + get(Counter.CACHE_PARTIAL_HITS) + get(Counter.CACHE_MISSES);
+		return total == 0 ? Double.NaN : (double) hits / total;
+	}
+
+	/**
+	 * @param stage The stage
+	 * @param quantile The quantile, between 0 and 1
+	 * @return The upper bound of the bucket containing the quantile in nanoseconds, 0 without measurements
+	 */
+	public static long getPercentile(Stage stage, double quantile){
+		return latencies[stage.ordinal()].percentile(quantile);
+	}
+
+	/**
+	 * @return A one line summary of the counters and the stages with measurements
+	 */
+	public static String summary(){
+		StringBuilder b = new StringBuilder("metrics:");
+		b.append(String.format(Locale.ROOT, " events=%d failed=%d requests=%d retries=%d downloaded=%.1fMB cacheHitRate=%.3f",
+				get(Counter.EVENTS), get(Counter.FAILED_EVENTS), get(Counter.REQUESTS), get(Counter.RETRIES),
+				get(Counter.BYTES_DOWNLOADED) / 1e6, getCacheHitRate()));
+		for(Stage stage: Stage.values()){
+			Latency l = latencies[stage.ordinal()];
+			long count = l.count.sum();
+			if(count > 0){
+				b.append(String.format(Locale.ROOT, " %s[n=%d mean=%.1fus p99=%.1fus]", stage.name().toLowerCase(Locale.ROOT),
+						count, l.sum.sum() / 1e3 / count, l.percentile(0.99) / 1e3));
+			}
+		}
+		return b.toString();
+	}
+
+	/**
+	 * @return All counters and stages as a JSON object, durations in microseconds
+	 */
+	public static String toJSON(){
+		StringBuilder b = new StringBuilder("{\n");
+		b.append("  \"uptimeMillis\": ").append(ManagementFactory.getRuntimeMXBean().getUptime()).append(",\n");
+		double hitRate = getCacheHitRate();
+		b.append("  \"cacheHitRate\": ").append(Double.isNaN(hitRate) ? "null" : String.format(Locale.ROOT, "%.4f", hitRate)).append(",\n");
+		b.append("  \"counters\": {");
+		Counter[] cs = Counter.values();
+		for(int i = 0; i < cs.length; i++){
+			b.append(i == 0 ? "\n" : ",\n").append("    \"").append(cs[i].name().toLowerCase(Locale.ROOT)).append("\": ").append(get(cs[i]));
+		}
+		b.append("\n  },\n  \"stages\": {");
+		Stage[] ss = Stage.values();
+		for(int i = 0; i < ss.length; i++){
+			Latency l = latencies[ss[i].ordinal()];
+			long count = l.count.sum();
+			b.append(i == 0 ? "\n" : ",\n").append("    \"").append(ss[i].name().toLowerCase(Locale.ROOT)).append("\": ");
+			b.append(String.format(Locale.ROOT, "{\"count\": %d, \"totalMicros\": %.1f, \"meanMicros\": %.3f, \"p50Micros\": %.3f, \"p90Micros\": %.3f, \"p99Micros\": %.3f, \"maxMicros\": %.3f}",
+					count, l.sum.sum() / 1e3, count == 0 ? 0 : l.sum.sum() / 1e3 / count,
+					l.percentile(0.5) / 1e3, l.percentile(0.9) / 1e3, l.percentile(0.99) / 1e3, l.max.get() / 1e3));
+		}
+		b.append("\n  }\n}\n");
+		return b.toString();
+	}
+
+	/**
+	 * @return The bucket of the given duration: values below 8 have their own bucket, above that every power of two
+	 * 			is split in 8 buckets on the 3 bits after the highest bit.
+	 */
+	private static int bucket(long nanos){
+		if(nanos < (1 << SUB_BITS)){
+			return (int) Math.max(nanos, 0);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+		return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+	}
+
+	/**
+	 * @return The largest duration in the given bucket
+	 */
+	private static long upperBound(int bucket){
+		if(bucket < (1 << SUB_BITS)){
+			return bucket;
+		}
+		int exponent = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+		long sub = bucket & ((1 << SUB_BITS) - 1);
+		long lower = (1L << exponent) + (sub << (exponent - SUB_BITS));
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Histogram of the durations of one stage, can be recorded by multiple threads without locking
+	 */
+	private static class Latency {
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		final LongAdder count = new LongAdder();
+		final LongAdder sum = new LongAdder();
+		final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		void record(long nanos){
+			this.buckets.incrementAndGet(Metrics.bucket(nanos));
+			this.count.increment();
+			this.sum.add(nanos);
+			this.max.accumulate(nanos);
+		}
+
+		void reset(){
+			for(int i = 0; i < BUCKETS; i++){
+				this.buckets.set(i, 0);
+			}
+			this.count.reset();
+			this.sum.reset();
+			this.max.reset();
+		}
+
+		long percentile(double quantile){
+			long total = 0;
+			for(int i = 0; i < BUCKETS; i++){
+				total += this.buckets.get(i);
+			}
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for(int i = 0; i < BUCKETS; i++){
+				seen += this.buckets.get(i);
+				if(seen >= rank && seen > 0){
+					return Math.min(Metrics.upperBound(i), this.max.get());
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Flight recorder event of one measured stage
+	 */
+	@Name("stockdata.Stage")
+	@Label("Stage")
+	@Category("StockDataTool")
+	static class StageEvent extends jdk.jfr.Event {
+		@Label("Stage")
+		String stage;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+	}
+}
@@ -0,0 +1,293 @@
+package stockdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-through cache of stock data on disk.
+ * For every company the union of all loaded intervals is kept, a request is served from the cache and only
+ * the days which aren't in the cache yet are loaded from the source.
+ * Every company is stored in two files in the cache directory: the prices (binary snapshot) and the loaded intervals
+ * with the time of the first load.
+ * @author Aeilko Bos
+ */
+public class PriceCache implements DataLoader {
+	// The loader used for days which aren't in the cache
+	private final DataLoader source;
+	// The directory of the cache
+	private final Path dir;
+	// Maximum size of the cache directory in bytes
+	private final long maxBytes;
+	// Maximum age of a cached company in milliseconds, after which it is loaded again
+	private final long maxAge;
+	// Companies in memory, by file name
+	private final ConcurrentHashMap<String, Entry> entries;
+	// Whether files have been written since the size of the directory was last checked
+	private final AtomicBoolean written;
+
+	/**
+	 * The cached data of one company
+	 */
+	private static class Entry {
+		// All cached days
+		PriceSeries series;
+		// The loaded intervals as (first, last) epoch day pairs, sorted and not overlapping
+		int[] ranges = new int[0];
+		// Time of the first load of this entry, the age isn't reset by loading more days
+		long created = System.currentTimeMillis();
+		// Whether the files have been read
+		boolean read = false;
+	}
+
+
+	// Constructor
+	/**
+	 * @param dir The directory of the cache
+	 * @param maxBytes Maximum size of the cache directory in bytes, the least recently updated companies are removed first
+	 * @param maxAgeDays Maximum age of a cached company in days
+	 * @param source The loader used for days which aren't in the cache
+	 */
+	public PriceCache(String dir, long maxBytes, int maxAgeDays, DataLoader source){
+		this.source = source;
+		this.dir = Paths.get(dir);
+		this.maxBytes = maxBytes;
+		this.maxAge = maxAgeDays * 24L * 60 * 60 * 1000;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.written = new AtomicBoolean();
+	}
+
+
+	// Commands
+	@Override
+	public Data load(String id, char mode, int from, int to) throws IOException {
+		if(mode != 'd'){
+			// Bars are resampled from the cached days, so every interval shares one download
+			return new Data(this.load(id, 'd', Resampler.periodStart(from, mode), to).getSeries(), mode);
+		}
+		String name = PriceCache.fileName(id, mode);
+		Data data = this.load(name, id, from, to);
+		// Outside the lock of the entry, evicting locks the entries of other companies
+		if(this.written.getAndSet(false)){
+			this.evict(name);
+		}
+		return data;
+	}
+
+	private Data load(String name, String id, int from, int to) throws IOException {
+		Entry entry = this.entries.computeIfAbsent(name, k -> new Entry());
+		synchronized(entry){
+			if(!entry.read){
+				this.read(name, entry);
+			}
+			if(System.currentTimeMillis() - entry.created > this.maxAge){
+				// Too old, start over
+				entry.series = new PriceSeries();
+				entry.ranges = new int[0];
+				entry.created = System.currentTimeMillis();
+			}
+
+			// Load the missing intervals
+			List<int[]> gaps = PriceCache.gaps(entry.ranges, from, to);
+			if(gaps.isEmpty()){
+				Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+			}
+			else{
+				boolean miss = gaps.size() == 1 && gaps.get(0)[0] == from && gaps.get(0)[1] == to;
+				Metrics.count(miss ? Metrics.Counter.CACHE_MISSES : Metrics.Counter.CACHE_PARTIAL_HITS, 1);
+				// Days from today on can still change
+				int lastFinal = (int) LocalDate.now().toEpochDay() - 1;
+				for(int[] gap: gaps){
+					// Exchanges are closed in weekends
+					if(PriceCache.hasWeekday(gap[0], gap[1])){
+						Data data = this.source.load(id, 'd', gap[0], gap[1]);
+						entry.series.addAll(data.getSeries());
+					}
+					if(gap[0] <= Math.min(gap[1], lastFinal)){
+						entry.ranges = PriceCache.addRange(entry.ranges, gap[0], Math.min(gap[1], lastFinal));
+					}
+				}
+				entry.series.sort();
+				this.write(name, entry);
+			}
+
+			PriceSeries result = entry.series.copyRange(from, to);
+			result.trim();
+			return new Data(result);
+		}
+	}
+
+	private void read(String name, Entry entry){
+		entry.read = true;
+		entry.series = new PriceSeries();
+		File prices = this.dir.resolve(name + ".series").toFile();
+		Path ranges = this.dir.resolve(name + ".ranges");
+		if(!prices.exists() || !Files.exists(ranges)){
+			return;
+		}
+
+		try{
+			int[] r = new int[0];
+			// Files without a creation time are as old as their last update
+			long created = prices.lastModified();
+			for(String line: Files.readAllLines(ranges, StandardCharsets.ISO_8859_1)){
+				String[] cols = line.split(";");
+				if(cols.length == 2 && cols[0].equals("created")){
+					created = Long.parseLong(cols[1]);
+				}
+				else if(cols.length == 2){
+					r = PriceCache.addRange(r, (int) LocalDate.parse(cols[0]).toEpochDay(), (int) LocalDate.parse(cols[1]).toEpochDay());
+				}
+			}
+			entry.series = SeriesSnapshot.read(prices.toPath());
+			entry.ranges = r;
+			entry.created = created;
+		}
+		catch(IOException | RuntimeException e){ System.err.println("Cache van '" + name + "' kon niet gelezen worden"); }
+	}
+
+	private void write(String name, Entry entry) throws IOException{
+		Files.createDirectories(this.dir);
+		StringBuilder ranges = new StringBuilder("created;" + entry.created + "\n");
+		for(int i = 0; i < entry.ranges.length; i += 2){
+			ranges.append(EpochDay.toLocalDate(entry.ranges[i])).append(';').append(EpochDay.toLocalDate(entry.ranges[i+1])).append('\n');
+		}
+		SeriesSnapshot.write(entry.series, this.dir.resolve(name + ".series"));
+		Files.write(this.dir.resolve(name + ".ranges"), ranges.toString().getBytes(StandardCharsets.ISO_8859_1));
+		this.written.set(true);
+	}
+
+	/**
+	 * Removes the least recently updated companies until the cache directory is smaller than the maximum size.
+	 * A company is removed under the lock of its entry, a load of that company waits and then starts over.
+	 * @param keep The company which is never removed
+	 */
+	private void evict(String keep){
+		File[] files = this.dir.toFile().listFiles((d, n) -> n.endsWith(".series"));
+		if(files == null){
+			return;
+		}
+		long total = 0;
+		for(File f: files){
+			total += f.length() + this.dir.resolve(PriceCache.baseName(f) + ".ranges").toFile().length();
+		}
+		if(total <= this.maxBytes){
+			return;
+		}
+
+		Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+		for(File f: files){
+			if(total <= this.maxBytes){
+				break;
+			}
+			String name = PriceCache.baseName(f);
+			if(name.equals(keep)){
+				continue;
+			}
+			File ranges = this.dir.resolve(name + ".ranges").toFile();
+			Entry entry = this.entries.computeIfAbsent(name, k -> new Entry());
+			synchronized(entry){
+				total -= f.length() + ranges.length();
+				ranges.delete();
+				f.delete();
+				// The entry stays in the map, so no second entry of this company can be created
+				entry.read = true;
+				entry.series = new PriceSeries();
+				entry.ranges = new int[0];
+				entry.created = System.currentTimeMillis();
+			}
+		}
+	}
+
+
+	// Queries
+	private static String fileName(String id, char mode){
+		return id.replaceAll("[^A-Za-z0-9._^-]", "_") + "_" + mode;
+	}
+
+	private static String baseName(File f){
+		return f.getName().substring(0, f.getName().length() - ".series".length());
+	}
+
+	static boolean hasWeekday(int from, int to){
+		for(int day = from; day <= to; day++){
+			// Epoch day 0 is a thursday
+			if(Math.floorMod(day + 3, 7) < 5){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param ranges Sorted (first, last) pairs
+	 * @param from The first day
+	 * @param to The last day
+	 * @return The intervals from up to and including to which are not in ranges
+	 */
+	static List<int[]> gaps(int[] ranges, int from, int to){
+		List<int[]> gaps = new ArrayList<int[]>();
+		int cur = from;
+		for(int i = 0; i < ranges.length && cur <= to; i += 2){
+			if(ranges[i+1] < cur){
+				continue;
+			}
+			if(ranges[i] > to){
+				break;
+			}
+			if(ranges[i] > cur){
+				gaps.add(new int[]{cur, ranges[i]-1});
+			}
+			cur = Math.max(cur, ranges[i+1]+1);
+		}
+		if(cur <= to){
+			gaps.add(new int[]{cur, to});
+		}
+		return gaps;
+	}
+
+	/**
+	 * @param ranges Sorted (first, last) pairs
+	 * @param from The first day of the new interval
+	 * @param to The last day of the new interval
+	 * @return The sorted pairs including the new interval, overlapping and adjacent intervals are merged
+	 */
+	static int[] addRange(int[] ranges, int from, int to){
+		int[] result = new int[ranges.length + 2];
+		int n = 0;
+		boolean added = false;
+		for(int i = 0; i <= ranges.length; i += 2){
+			int a, b;
+			if(!added && (i == ranges.length || from < ranges[i])){
+				a = from;
+				b = to;
+				added = true;
+				i -= 2;
+			}
+			else if(i < ranges.length){
+				a = ranges[i];
+				b = ranges[i+1];
+			}
+			else{
+				break;
+			}
+			if(n > 0 && a <= result[n-1] + 1){
+				result[n-1] = Math.max(result[n-1], b);
+			}
+			else{
+				result[n++] = a;
+				result[n++] = b;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+}
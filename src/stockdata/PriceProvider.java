@@ -0,0 +1,75 @@
+package stockdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Vendor of stock data in CSV format (Date,Open,High,Low,Close,Volume,Adj Close).
+ * @author Aeilko Bos
+ */
+public interface PriceProvider {
+	/**
+	 * Opens the stock data of the given company in the given interval, the caller has to close the stream.
+	 * @param id The ID of the company.
+	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
+	 * @param from The first epoch day.
+	 * @param to The last epoch day.
+	 * @return The CSV data
+	 * @throws IOException If the stock data is not available.
+	 */
+	public InputStream open(String id, char mode, int from, int to) throws IOException;
+
+	/**
+	 * Opens the stock data without blocking, by default open is called on the common pool.
+	 * @return The CSV data, completed exceptionally with an IOException if the stock data is not available.
+	 */
+	public default CompletableFuture<InputStream> openAsync(String id, char mode, int from, int to){
+		return CompletableFuture.supplyAsync(() -> {
+			try{
+				return this.open(id, mode, from, to);
+			}
+			catch(IOException e){ throw new CompletionException(e); }
+		});
+	}
+
+	/**
+	 * Fetches and parses the stock data without blocking
+	 * @return The series of the requested interval
+	 */
+	public default CompletableFuture<PriceSeries> fetchAsync(String id, char mode, int from, int to){
+		long start = Metrics.start();
+		return this.openAsync(id, mode, from, to).thenApply(in -> {
+			Metrics.stop(Metrics.Stage.FETCH, start);
+			try(InputStream stream = in){
+				return PriceProvider.trim(CSVParser.parse(Channels.newChannel(stream)), from, to);
+			}
+			catch(IOException e){ throw new CompletionException(e); }
+		});
+	}
+
+	/**
+	 * Fetches and parses the stock data
+	 * @return The series of the requested interval
+	 * @throws IOException If the stock data is not available.
+	 */
+	public default PriceSeries fetch(String id, char mode, int from, int to) throws IOException{
+		long start = Metrics.start();
+		try(InputStream in = this.open(id, mode, from, to)){
+			Metrics.stop(Metrics.Stage.FETCH, start);
+			return PriceProvider.trim(CSVParser.parse(Channels.newChannel(in)), from, to);
+		}
+	}
+
+	/**
+	 * @return The series without the days outside from and to, which some vendors return
+	 */
+	public static PriceSeries trim(PriceSeries series, int from, int to){
+		if(series.size() == 0 || (series.getDay(0) >= from && series.getDay(series.size()-1) <= to)){
+			return series;
+		}
+		return series.copyRange(from, to);
+	}
+}
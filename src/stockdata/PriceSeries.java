@@ -0,0 +1,349 @@
+package stockdata;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage of the daily stock prices of a company.
+ * The days are stored as a sorted column of epoch days with the prices in parallel primitive columns,
+ * a day is looked up using a binary search on the day column.
+ * A slice is a view on a range of rows of another series, it shares the columns until rows are added to it.
+ * @author Aeilko Bos
+ */
+public class PriceSeries {
+	// Default number of days reserved for a new series
+	private static final int DEFAULT_CAPACITY = 256;
+
+	// The epoch day of every row
+	private int[] days;
+	// Opening price
+	private double[] open;
+	// The highest price
+	private double[] high;
+	// The lowest price
+	private double[] low;
+	// The closing price
+	private double[] close;
+	// The total volume of stocks traded
+	private long[] volume;
+	// The adjusted closing price
+	private double[] adjClose;
+
+	// Index of the first row in the columns, only a slice starts after 0
+	private int offset;
+	// Number of rows in use
+	private int size;
+	// Whether the rows are in ascending order of days without duplicates
+	private boolean sorted;
+	// Whether the columns are shared with another series, they are copied before rows are added
+	private boolean shared;
+
+
+	// Constructor
+	/**
+	 * Creates an empty series
+	 */
+	public PriceSeries(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty series with room for the given number of days
+	 * @param capacity The expected number of days
+	 */
+	public PriceSeries(int capacity){
+		capacity = Math.max(capacity, 1);
+		this.days = new int[capacity];
+		this.open = new double[capacity];
+		this.high = new double[capacity];
+		this.low = new double[capacity];
+		this.close = new double[capacity];
+		this.volume = new long[capacity];
+		this.adjClose = new double[capacity];
+		this.size = 0;
+		this.sorted = true;
+	}
+
+	/**
+	 * Creates a series from the given columns, the arrays are used without copying them.
+	 * @require The days are sorted and all columns have at least size elements
+	 */
+	PriceSeries(int[] days, double[] open, double[] high, double[] low, double[] close, long[] volume, double[] adjClose, int size){
+		this.days = days;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+		this.volume = volume;
+		this.adjClose = adjClose;
+		this.size = size;
+		this.sorted = true;
+		if(days.length == 0){
+			this.grow(1);
+		}
+	}
+
+
+	// Commands
+	/**
+	 * Adds a day to the series, days may be added in any order.
+	 * If days are not added in ascending order sort() has to be called before the series is queried.
+	 * @param day The epoch day
+	 * @param open Opening price
+	 * @param high The highest price
+	 * @param low The lowest price
+	 * @param close The closing price
+	 * @param volume The traded volume
+	 * @param adjClose The adjusted closing price
+	 */
+	public void add(int day, double open, double high, double low, double close, long volume, double adjClose){
+		if(this.shared || this.size == this.days.length){
+			this.grow(this.size * 2);
+		}
+		if(this.size > 0 && day <= this.days[this.size-1]){
+			this.sorted = false;
+		}
+		int i = this.size;
+		this.days[i] = day;
+		this.open[i] = open;
+		this.high[i] = high;
+		this.low[i] = low;
+		this.close[i] = close;
+		this.volume[i] = volume;
+		this.adjClose[i] = adjClose;
+		this.size++;
+	}
+
+	/**
+	 * Adds all days of the given series, days which are already in this series are replaced after sort() is called.
+	 * @param other The series to add
+	 */
+	public void addAll(PriceSeries other){
+		for(int i = other.offset; i < other.offset + other.size; i++){
+			this.add(other.days[i], other.open[i], other.high[i], other.low[i], other.close[i], other.volume[i], other.adjClose[i]);
+		}
+	}
+
+	/**
+	 * Sorts the rows in ascending order of days.
+	 * When a day was added multiple times the last added row is kept.
+	 */
+	public void sort(){
+		if(this.sorted){
+			return;
+		}
+
+		// Yahoo Finance returns the newest day first, in that case reversing is enough
+		boolean descending = true;
+		for(int i = 1; i < this.size && descending; i++){
+			descending = this.days[i] < this.days[i-1];
+		}
+
+		int[] order = new int[this.size];
+		if(descending){
+			for(int i = 0; i < this.size; i++){
+				order[i] = this.size - 1 - i;
+			}
+		}
+		else{
+			// Sort on (day, insertion index) packed in a single long
+			long[] keys = new long[this.size];
+			for(int i = 0; i < this.size; i++){
+				keys[i] = ((long) this.days[i] << 32) | i;
+			}
+			Arrays.sort(keys);
+			int n = 0;
+			for(int i = 0; i < this.size; i++){
+				// Only keep the last added row of a day
+				if(i+1 < this.size && (int) (keys[i+1] >> 32) == (int) (keys[i] >> 32)){
+					continue;
+				}
+				order[n++] = (int) keys[i];
+			}
+			order = Arrays.copyOf(order, n);
+		}
+
+		this.permute(order);
+		this.sorted = true;
+	}
+
+	/**
+	 * Releases the unused capacity of the series
+	 */
+	public void trim(){
+		// A slice keeps sharing the columns
+		if(!this.shared && this.size < this.days.length){
+			this.grow(this.size);
+		}
+	}
+
+	private void grow(int capacity){
+		capacity = Math.max(capacity, 1);
+		int end = this.offset + capacity;
+		this.days = Arrays.copyOfRange(this.days, this.offset, end);
+		this.open = Arrays.copyOfRange(this.open, this.offset, end);
+		this.high = Arrays.copyOfRange(this.high, this.offset, end);
+		this.low = Arrays.copyOfRange(this.low, this.offset, end);
+		this.close = Arrays.copyOfRange(this.close, this.offset, end);
+		this.volume = Arrays.copyOfRange(this.volume, this.offset, end);
+		this.adjClose = Arrays.copyOfRange(this.adjClose, this.offset, end);
+		this.offset = 0;
+		this.shared = false;
+	}
+
+	private void permute(int[] order){
+		int n = order.length;
+		int[] newDays = new int[Math.max(n, 1)];
+		double[] newOpen = new double[newDays.length];
+		double[] newHigh = new double[newDays.length];
+		double[] newLow = new double[newDays.length];
+		double[] newClose = new double[newDays.length];
+		long[] newVolume = new long[newDays.length];
+		double[] newAdjClose = new double[newDays.length];
+		for(int i = 0; i < n; i++){
+			int j = order[i];
+			newDays[i] = this.days[j];
+			newOpen[i] = this.open[j];
+			newHigh[i] = this.high[j];
+			newLow[i] = this.low[j];
+			newClose[i] = this.close[j];
+			newVolume[i] = this.volume[j];
+			newAdjClose[i] = this.adjClose[j];
+		}
+		this.days = newDays;
+		this.open = newOpen;
+		this.high = newHigh;
+		this.low = newLow;
+		this.close = newClose;
+		this.volume = newVolume;
+		this.adjClose = newAdjClose;
+		this.size = n;
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of days in the series
+	 */
+	public int size(){
+		return this.size;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the given day or -1 if there is no data on that day
+	 * @require The series is sorted
+	 */
+	public int indexOf(int day){
+		int i = Arrays.binarySearch(this.days, this.offset, this.offset + this.size, day);
+		return i < 0 ? -1 : i - this.offset;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the last day on or before the given day, or -1 if there is none
+	 * @require The series is sorted
+	 */
+	public int floorIndex(int day){
+		int i = Arrays.binarySearch(this.days, this.offset, this.offset + this.size, day);
+		return (i < 0 ? -i - 2 : i) - this.offset;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the first day on or after the given day, or size() if there is none
+	 * @require The series is sorted
+	 */
+	public int ceilingIndex(int day){
+		int i = Arrays.binarySearch(this.days, this.offset, this.offset + this.size, day);
+		return (i < 0 ? -i - 1 : i) - this.offset;
+	}
+
+	/**
+	 * @param from The first epoch day
+	 * @param to The last epoch day
+	 * @return A copy of the days from up to and including to
+	 * @require The series is sorted
+	 */
+	public PriceSeries copyRange(int from, int to){
+		int start = this.offset + this.ceilingIndex(from);
+		int end = this.offset + this.floorIndex(to) + 1;
+		PriceSeries copy = new PriceSeries(end - start);
+		for(int i = start; i < end; i++){
+			copy.add(this.days[i], this.open[i], this.high[i], this.low[i], this.close[i], this.volume[i], this.adjClose[i]);
+		}
+		return copy;
+	}
+
+	/**
+	 * The slice shares the columns of this series, later changes to these rows show in the slice.
+	 * Adding rows to the slice copies its rows first, so it never changes this series.
+	 * @param from The first epoch day
+	 * @param to The last epoch day
+	 * @return A view on the days from up to and including to
+	 * @require The series is sorted
+	 */
+	public PriceSeries slice(int from, int to){
+		int start = this.ceilingIndex(from);
+		int end = Math.max(this.floorIndex(to) + 1, start);
+		PriceSeries slice = new PriceSeries(this.days, this.open, this.high, this.low, this.close, this.volume, this.adjClose, end - start);
+		slice.offset = this.offset + start;
+		slice.shared = true;
+		return slice;
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The epoch day of the row
+	 */
+	public int getDay(int i){
+		return this.days[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The opening price of the row
+	 */
+	public double getOpen(int i){
+		return this.open[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The highest price of the row
+	 */
+	public double getHigh(int i){
+		return this.high[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The lowest price of the row
+	 */
+	public double getLow(int i){
+		return this.low[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The closing price of the row
+	 */
+	public double getClose(int i){
+		return this.close[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The traded volume of the row
+	 */
+	public long getVolume(int i){
+		return this.volume[this.offset + i];
+	}
+
+	/**
+	 * @param i The index of the row
+	 * @return The adjusted closing price of the row
+	 */
+	public double getAdjClose(int i){
+		return this.adjClose[this.offset + i];
+	}
+}
@@ -0,0 +1,36 @@
+package stockdata;
+
+import java.io.IOException;
+
+/**
+ * Loads every request directly from a price provider.
+ * @author Aeilko Bos
+ */
+public class RemoteLoader implements DataLoader {
+	// The vendor of the stock data
+	private final PriceProvider provider;
+
+
+	// Constructor
+	/**
+	 * Loads from the default provider of RequestData
+	 */
+	public RemoteLoader(){
+		this(RequestData.getDefaultProvider());
+	}
+
+	/**
+	 * @param provider The vendor of the stock data
+	 */
+	public RemoteLoader(PriceProvider provider){
+		this.provider = provider;
+	}
+
+
+	// Commands
+	@Override
+	public Data load(String id, char mode, int from, int to) throws IOException {
+		// Bars are resampled from the days, so the vendor is only asked for one interval
+		return new Data(this.provider.fetch(id, 'd', Resampler.periodStart(from, mode), to), mode);
+	}
+}
@@ -0,0 +1,47 @@
+package stockdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Replays stock data from CSV files in a directory instead of downloading it, for runs without network access.
+ * The file of a company is <id>_<mode>.csv, for example ^NYA_d.csv. Files in the Yahoo Finance format and files
+ * written by Data.exportCSV can both be used. The files may contain more days than requested, fetch only returns
+ * the requested interval.
+ * @author Aeilko Bos
+ */
+public class ReplayPriceProvider implements PriceProvider {
+	// The directory containing the files
+	private final Path dir;
+
+
+	// Constructor
+	/**
+	 * @param dir The directory containing the files
+	 */
+	public ReplayPriceProvider(Path dir){
+		this.dir = dir;
+	}
+
+
+	// Commands
+	@Override
+	public InputStream open(String id, char mode, int from, int to) throws IOException {
+		Path file = this.getFile(id, mode);
+		if(!Files.isRegularFile(file)){
+			throw new IOException("Geen replay van " + id + " (" + file + ")");
+		}
+		return Files.newInputStream(file);
+	}
+
+
+	// Queries
+	/**
+	 * @return The file containing the stock data of the given company and interval
+	 */
+	public Path getFile(String id, char mode){
+		return this.dir.resolve(id + "_" + mode + ".csv");
+	}
+}
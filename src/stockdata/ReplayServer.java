@@ -0,0 +1,141 @@
+package stockdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server on the loopback address which serves the files of a ReplayPriceProvider, so the HTTP provider
+ * (connection reuse, timeouts, retries and concurrency) can be tested and load tested without the vendor.
+ * Every failEvery-th request is answered with 503 Service Unavailable to exercise the retries.
+ * @author Aeilko Bos
+ */
+public class ReplayServer {
+	// The served files
+	private final ReplayPriceProvider files;
+	// Every failEvery-th request fails, 0 if no request fails
+	private final int failEvery;
+	// Number of received requests
+	private final AtomicLong requests;
+	// The server
+	private final HttpServer server;
+
+
+	// Constructor
+	/**
+	 * Starts the server
+	 * @param files The served files
+	 * @param port The port, 0 for any free port
+	 * @param failEvery Every failEvery-th request fails, 0 if no request fails
+	 * @throws IOException If the server can't be started
+	 */
+	public ReplayServer(ReplayPriceProvider files, int port, int failEvery) throws IOException{
+		this.files = files;
+		this.failEvery = failEvery;
+		this.requests = new AtomicLong();
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "replay-server");
+			t.setDaemon(true);
+			return t;
+		}));
+		this.server.start();
+	}
+
+
+	// Commands
+	/**
+	 * Answers GET /<id>?g=<mode> with the file of the company, the id is URL encoded
+	 */
+	private void handle(HttpExchange exchange) throws IOException{
+		try(exchange){
+			long n = this.requests.incrementAndGet();
+			if(this.failEvery > 0 && n % this.failEvery == 0){
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+			URI uri = exchange.getRequestURI();
+			String id = URLDecoder.decode(uri.getRawPath().substring(1), StandardCharsets.UTF_8);
+			if(id.contains("/") || id.contains("\\") || id.contains("..")){
+				// Only files in the replay directory are served
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			char mode = 'd';
+			String query = uri.getQuery();
+			if(query != null){
+				for(String param: query.split("&")){
+					if(param.startsWith("g=") && param.length() > 2){
+						mode = param.charAt(2);
+					}
+				}
+			}
+			InputStream file;
+			try{
+				file = this.files.open(id, mode, 0, 0);
+			}
+			catch(IOException e){
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			// Errors while streaming can't be answered anymore, these close the exchange
+			try(InputStream in = file; OutputStream out = exchange.getResponseBody()){
+				exchange.getResponseHeaders().set("Content-Type", "text/csv");
+				exchange.sendResponseHeaders(200, 0);
+				in.transferTo(out);
+			}
+		}
+	}
+
+	/**
+	 * Stops the server
+	 */
+	public void stop(){
+		this.server.stop(0);
+	}
+
+
+	// Queries
+	/**
+	 * @return The URL template for a HttpPriceProvider which requests this server
+	 */
+	public String getUrlTemplate(){
+		return "http://" + this.server.getAddress().getHostString() + ":" + this.server.getAddress().getPort() + "/{id}?g={mode}&from={from}&to={to}";
+	}
+
+	/**
+	 * @return The number of received requests
+	 */
+	public long getRequests(){
+		return this.requests.get();
+	}
+
+
+	// Main method
+	/**
+	 * Serves a replay directory until the process is stopped
+	 * @param args The directory, optionally the port and the failure interval
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length < 1){
+			System.out.println("Usage: ReplayServer <dir> [port] [failEvery]");
+			return;
+		}
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int failEvery = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		ReplayServer server = new ReplayServer(new ReplayPriceProvider(Paths.get(args[0])), port, failEvery);
+		System.out.println("-Dstockdata.priceUrl=" + server.getUrlTemplate());
+	}
+}
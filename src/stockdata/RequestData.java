@@ -1,21 +1,37 @@
 package stockdata;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import program.Settings;
 
 public class RequestData {
 	
+	// The provider used when none is given, created from the settings
+	private static PriceProvider defaultProvider;
+	
+	// The client used for plain URLs
+	private static HttpPriceProvider http;
+	
+	// The vendor of the stock data
+	private final PriceProvider provider;
+	
 	// The data of this stock
 	private String data = "";
 	
 	// Constructor
-	public RequestData(){	}
+	public RequestData(){
+		this(RequestData.getDefaultProvider());
+	}
+	public RequestData(PriceProvider provider){
+		this.provider = provider;
+	}
 	public RequestData(String url) throws IOException{
+		this();
 		getDataFromURL(url);
 	}
 	
@@ -24,46 +40,61 @@ public class RequestData {
 	/**
 	 * Requests and returns this stock data of the given URL
 	 * @param url The URL from which the data is loaded.
-	 * @return The data in string format or an empty string if an error occured
+	 * @return The data in string format
+	 * @throws IOException If the URL is invalid or the request failed.
 	 */
 	public String getDataFromURL(String urlString) throws IOException{
-		StringBuilder result = new StringBuilder();
-		try {
-		    URL url = new URL(urlString);
-		    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setRequestMethod("GET");
-		    BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-		    String line;
-		    while ((line = rd.readLine()) != null) {
-		       result.append(line + "\n");
-		    }
-		    rd.close();
-		    this.data = result.toString();
+		HttpPriceProvider client = this.provider instanceof HttpPriceProvider ? (HttpPriceProvider) this.provider : RequestData.getHttp();
+		try(InputStream in = client.get(urlString)){
+			this.data = RequestData.read(in);
 		}
-		catch(ProtocolException e){ e.printStackTrace(); }
-		catch(MalformedURLException e) { e.printStackTrace(); }
-		//catch(IOException e) { System.err.println("Hetvolgende bestand kon niet worden gevonden: '" + urlString + "'"); }
-	    return result.toString();
+		return this.data;
 	}
 	
 	/**
-	 * Gets the stock data of the given company in the given interval from Yahoo Finance.
+	 * Opens the stock data of the given company in the given interval, the caller has to close the stream.
 	 * @param id The ID of the company.
 	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
 	 * @param startDay The starting day of the month.
-	 * @param startMonth The start month (1-12).
+	 * @param startMonth The start month (0-11).
 	 * @param startYear The start year.
 	 * @param endDay The end day of the month.
-	 * @param endMonth The end month (1-12)
+	 * @param endMonth The end month (0-11)
+	 * @param endYear The end year
+	 * @return The CSV data
+	 * @throws IOException If the stock data is not available.
+	 */
+	public InputStream open(String id, char mode, int startDay, int startMonth, int startYear, int endDay, int endMonth, int endYear) throws IOException{
+		// startMonth and endMonth both start at 0, like the Yahoo Finance ichart API
+		return this.provider.open(id, mode, EpochDay.of(startDay, startMonth+1, startYear), EpochDay.of(endDay, endMonth+1, endYear));
+	}
+	
+	/**
+	 * Gets the stock data of the given company in the given interval from the provider.
+	 * @param id The ID of the company.
+	 * @param mode The interval of the data (d=Day, w=Week, m=Month, y=Year)
+	 * @param startDay The starting day of the month.
+	 * @param startMonth The start month (0-11).
+	 * @param startYear The start year.
+	 * @param endDay The end day of the month.
+	 * @param endMonth The end month (0-11)
 	 * @param endYear The end year
 	 * @return String representation of the data
 	 * @throws IOException If the stock data is not available.
 	 */
 	public String getData(String id, char mode, int startDay, int startMonth, int startYear, int endDay, int endMonth, int endYear) throws IOException{
-		// startMonth and endMonth both start at 0 for some reason, this fixes it.
-		//startMonth--;
-		//endMonth--;
-		return getDataFromURL("http://ichart.yahoo.com/table.csv?s=" + id + "&a=" + startMonth + "&b=" + startDay + "&c=" + startYear + "&d=" + endMonth + "&e=" + endDay + "&f=" + endYear + "&g=" + mode + "&ignore=.csv");
+		try(InputStream in = this.open(id, mode, startDay, startMonth, startYear, endDay, endMonth, endYear)){
+			this.data = RequestData.read(in);
+		}
+		return this.data;
+	}
+	
+	/**
+	 * Replaces the provider which is used when none is given
+	 * @param provider The provider
+	 */
+	public static synchronized void setDefaultProvider(PriceProvider provider){
+		RequestData.defaultProvider = provider;
 	}
 	
 	
@@ -75,4 +106,41 @@ public class RequestData {
 	public String getData(){
 		return this.data;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * @return The vendor of the stock data
+	 */
+	public PriceProvider getProvider(){
+		return this.provider;
+	}
+	
+	/**
+	 * Returns the provider which is used when none is given: the replay provider when stockdata.provider is
+	 * replay, otherwise the HTTP provider with the URL template of the settings.
+	 * @return The default provider
+	 */
+	public static synchronized PriceProvider getDefaultProvider(){
+		if(RequestData.defaultProvider == null){
+			if("replay".equals(Settings.provider)){
+				RequestData.defaultProvider = new ReplayPriceProvider(Paths.get(Settings.replayDir));
+			}
+			else{
+				RequestData.defaultProvider = RequestData.getHttp();
+			}
+		}
+		return RequestData.defaultProvider;
+	}
+	
+	private static synchronized HttpPriceProvider getHttp(){
+		if(RequestData.http == null){
+			RequestData.http = new HttpPriceProvider(Settings.priceUrl, Duration.ofMillis(Settings.connectTimeoutMillis), Duration.ofMillis(Settings.requestTimeoutMillis), Settings.retries, Settings.maxConnections);
+		}
+		return RequestData.http;
+	}
+	
+	private static String read(InputStream in) throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.transferTo(out);
+		return out.toString(StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,89 @@
+package stockdata;
+
+import java.time.LocalDate;
+
+/**
+ * Derives weekly, monthly and yearly bars from daily rows.
+ * A bar has the opening price of the first day of the period, the highest high, the lowest low, the closing and
+ * adjusted closing price of the last day and the summed volume. It is dated on the first day of the period, like
+ * the bars of the vendors, so the bars of exchanges with different holidays have the same days.
+ * Weeks start on Monday (ISO).
+ * @author Aeilko Bos
+ */
+public class Resampler {
+
+	private Resampler(){	}
+
+
+	// Queries
+	/**
+	 * @param daily The daily rows, sorted on day
+	 * @param mode The interval of the bars (d=Day, w=Week, m=Month, y=Year)
+	 * @return The bars, the given series itself for d
+	 * @throws IllegalArgumentException If the mode is unknown
+	 */
+	public static PriceSeries resample(PriceSeries daily, char mode){
+		if(mode == 'd'){
+			return daily;
+		}
+		// Fails on an unknown mode, also when there are no rows
+		Resampler.periodEnd(0, mode);
+		PriceSeries bars = new PriceSeries(Math.max(daily.size() / (mode == 'w' ? 4 : mode == 'm' ? 20 : 250), 1));
+		int n = daily.size();
+		int i = 0;
+		while(i < n){
+			// The rows up to the end of the period of row i form one bar
+			int start = Resampler.periodStart(daily.getDay(i), mode);
+			int end = Resampler.periodEnd(daily.getDay(i), mode);
+			int first = i;
+			double high = daily.getHigh(i);
+			double low = daily.getLow(i);
+			long volume = 0;
+			for(; i < n && daily.getDay(i) <= end; i++){
+				high = Math.max(high, daily.getHigh(i));
+				low = Math.min(low, daily.getLow(i));
+				volume += daily.getVolume(i);
+			}
+			int last = i - 1;
+			bars.add(start, daily.getOpen(first), high, low, daily.getClose(last), volume, daily.getAdjClose(last));
+		}
+		bars.trim();
+		return bars;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @param mode The interval (d=Day, w=Week, m=Month, y=Year)
+	 * @return The first day of the period containing the given day
+	 * @throws IllegalArgumentException If the mode is unknown
+	 */
+	public static int periodStart(int day, char mode){
+		switch(mode){
+		case 'd': return day;
+		// Epoch day 0 is a Thursday, so Monday is day -3 of week 0
+		case 'w': return Math.floorDiv(day + 3, 7) * 7 - 3;
+		case 'm': return (int) EpochDay.toLocalDate(day).withDayOfMonth(1).toEpochDay();
+		case 'y': return (int) EpochDay.toLocalDate(day).withDayOfYear(1).toEpochDay();
+		default: throw new IllegalArgumentException("Onbekend interval '" + mode + "'");
+		}
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @param mode The interval (d=Day, w=Week, m=Month, y=Year)
+	 * @return The last day of the period containing the given day
+	 * @throws IllegalArgumentException If the mode is unknown
+	 */
+	public static int periodEnd(int day, char mode){
+		switch(mode){
+		case 'd': return day;
+		case 'w': return Math.floorDiv(day + 3, 7) * 7 + 3;
+		case 'm': {
+			LocalDate d = EpochDay.toLocalDate(day);
+			return (int) d.withDayOfMonth(d.lengthOfMonth()).toEpochDay();
+		}
+		case 'y': return (int) EpochDay.toLocalDate(day).withDayOfYear(1).plusYears(1).toEpochDay() - 1;
+		default: throw new IllegalArgumentException("Onbekend interval '" + mode + "'");
+		}
+	}
+}
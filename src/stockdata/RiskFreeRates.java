@@ -0,0 +1,140 @@
+package stockdata;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.util.Arrays;
+
+/**
+ * The risk-free interest rates, loaded once from a CSV file and indexed by day.
+ * Every rate type is stored as a sorted column of epoch days with a parallel column of rates.
+ * @author Aeilko Bos
+ */
+public class RiskFreeRates {
+	// The file with the rates used by the program
+	public static final String FILE = "data/RFIrate.csv";
+
+	/**
+	 * The rate types in the rates file
+	 */
+	public enum Type { BC_20year, Over_10_Years, Real_Rate }
+
+	// Shared instance based on FILE
+	private static RiskFreeRates instance;
+
+	// Epoch days per rate type
+	private final int[][] days;
+	// Rates (in percentages) per rate type
+	private final double[][] rates;
+
+
+	// Constructor
+	/**
+	 * Loads the rates from the given CSV file (Dutch format: date;type;rate)
+	 * @param file The CSV file
+	 * @throws IOException If the file can't be read
+	 */
+	public RiskFreeRates(String file) throws IOException{
+		int types = Type.values().length;
+		int[][] d = new int[types][64];
+		double[][] r = new double[types][64];
+		int[] size = new int[types];
+
+		try(BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.ISO_8859_1)){
+			String line;
+			while((line = in.readLine()) != null){
+				int s1 = line.indexOf(';');
+				int s2 = line.indexOf(';', s1+1);
+				if(s1 < 0 || s2 < 0){
+					continue;
+				}
+				Type type;
+				try{
+					type = Type.valueOf(line.substring(s1+1, s2));
+				}
+				catch(IllegalArgumentException e){ continue; } // Header or unknown rate type
+
+				try{
+					int t = type.ordinal();
+					if(size[t] == d[t].length){
+						d[t] = Arrays.copyOf(d[t], size[t]*2);
+						r[t] = Arrays.copyOf(r[t], size[t]*2);
+					}
+					d[t][size[t]] = EpochDay.parseDMY(line.subSequence(0, s1));
+					r[t][size[t]] = Double.parseDouble(line.substring(s2+1).replace(',', '.'));
+					size[t]++;
+				}
+				catch(IllegalArgumentException | DateTimeException e){ System.err.println("Kon de regel '" + line + "' niet lezen"); }
+			}
+		}
+
+		this.days = new int[types][];
+		this.rates = new double[types][];
+		for(int t = 0; t < types; t++){
+			this.sort(d[t], r[t], size[t], t);
+		}
+	}
+
+	private void sort(int[] d, double[] r, int size, int t){
+		// Sort on (day, line) packed in a single long, on duplicate days the last line is kept
+		long[] keys = new long[size];
+		for(int i = 0; i < size; i++){
+			keys[i] = ((long) d[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] newDays = new int[size];
+		double[] newRates = new double[size];
+		int n = 0;
+		for(int i = 0; i < size; i++){
+			if(i+1 < size && (int) (keys[i+1] >> 32) == (int) (keys[i] >> 32)){
+				continue;
+			}
+			newDays[n] = (int) (keys[i] >> 32);
+			newRates[n] = r[(int) keys[i]];
+			n++;
+		}
+		this.days[t] = Arrays.copyOf(newDays, n);
+		this.rates[t] = Arrays.copyOf(newRates, n);
+	}
+
+	/**
+	 * @return The rates of the rates file used by the program, it is loaded on the first call.
+	 * @throws IOException If the file can't be read
+	 */
+	public static synchronized RiskFreeRates getInstance() throws IOException{
+		if(instance == null){
+			instance = new RiskFreeRates(FILE);
+		}
+		return instance;
+	}
+
+
+	// Queries
+	/**
+	 * Returns the rate on the given day, when there is no rate on that day (weekends, holidays)
+	 * the rate of the nearest day before is used.
+	 * @param type The rate type
+	 * @param day The epoch day
+	 * @return The rate in percentages, or 0 if there is no rate on or before the given day
+	 */
+	public double getRate(Type type, int day){
+		int t = type.ordinal();
+		int i = Arrays.binarySearch(this.days[t], day);
+		if(i < 0){
+			i = -i - 2;
+		}
+		return i < 0 ? 0 : this.rates[t][i];
+	}
+
+	/**
+	 * @param type The rate type
+	 * @param day The epoch day
+	 * @return Whether there is a rate of the given type on exactly the given day
+	 */
+	public boolean hasRate(Type type, int day){
+		return Arrays.binarySearch(this.days[type.ordinal()], day) >= 0;
+	}
+}
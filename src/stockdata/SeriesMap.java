@@ -0,0 +1,143 @@
+package stockdata;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only map view of one column of a PriceSeries.
+ * No data is copied, every lookup is a binary search in the series.
+ * @author Aeilko Bos
+ */
+class SeriesMap<V> extends AbstractMap<Date, V> implements SortedMap<Date, V> {
+	// The series this is a view of
+	private final PriceSeries series;
+	// Reads the value of the column at an index
+	private final IntFunction<V> column;
+	// First index in the view
+	private final int from;
+	// Index after the last index in the view
+	private final int to;
+
+
+	// Constructor
+	/**
+	 * Creates a view of the full series
+	 * @param series The series
+	 * @param column Function reading the value of the column at an index
+	 */
+	SeriesMap(PriceSeries series, IntFunction<V> column){
+		this(series, column, 0, series.size());
+	}
+
+	private SeriesMap(PriceSeries series, IntFunction<V> column, int from, int to){
+		this.series = series;
+		this.column = column;
+		this.from = from;
+		this.to = Math.max(from, to);
+	}
+
+
+	// Queries
+	@Override
+	public int size(){
+		return this.to - this.from;
+	}
+
+	@Override
+	public V get(Object key){
+		int i = this.indexOf(key);
+		return i < 0 ? null : this.column.apply(i);
+	}
+
+	@Override
+	public boolean containsKey(Object key){
+		return this.indexOf(key) >= 0;
+	}
+
+	private int indexOf(Object key){
+		if(!(key instanceof Date)){
+			return -1;
+		}
+		int i = this.series.indexOf(EpochDay.of((Date) key));
+		return (i < this.from || i >= this.to) ? -1 : i;
+	}
+
+	@Override
+	public Comparator<? super Date> comparator(){
+		return null;
+	}
+
+	@Override
+	public SortedMap<Date, V> subMap(Date fromKey, Date toKey){
+		int start = Math.max(this.from, this.series.ceilingIndex(EpochDay.of(fromKey)));
+		int end = Math.min(this.to, this.series.ceilingIndex(EpochDay.of(toKey)));
+		return new SeriesMap<V>(this.series, this.column, start, end);
+	}
+
+	@Override
+	public SortedMap<Date, V> headMap(Date toKey){
+		int end = Math.min(this.to, this.series.ceilingIndex(EpochDay.of(toKey)));
+		return new SeriesMap<V>(this.series, this.column, this.from, end);
+	}
+
+	@Override
+	public SortedMap<Date, V> tailMap(Date fromKey){
+		int start = Math.max(this.from, this.series.ceilingIndex(EpochDay.of(fromKey)));
+		return new SeriesMap<V>(this.series, this.column, start, this.to);
+	}
+
+	@Override
+	public Date firstKey(){
+		if(this.size() == 0){
+			throw new NoSuchElementException();
+		}
+		return EpochDay.toDate(this.series.getDay(this.from));
+	}
+
+	@Override
+	public Date lastKey(){
+		if(this.size() == 0){
+			throw new NoSuchElementException();
+		}
+		return EpochDay.toDate(this.series.getDay(this.to-1));
+	}
+
+	@Override
+	public Set<Entry<Date, V>> entrySet(){
+		return new AbstractSet<Entry<Date, V>>(){
+			@Override
+			public Iterator<Entry<Date, V>> iterator(){
+				return new Iterator<Entry<Date, V>>(){
+					private int i = from;
+
+					@Override
+					public boolean hasNext(){
+						return this.i < to;
+					}
+
+					@Override
+					public Entry<Date, V> next(){
+						if(this.i >= to){
+							throw new NoSuchElementException();
+						}
+						Entry<Date, V> e = new SimpleImmutableEntry<Date, V>(EpochDay.toDate(series.getDay(this.i)), column.apply(this.i));
+						this.i++;
+						return e;
+					}
+				};
+			}
+
+			@Override
+			public int size(){
+				return SeriesMap.this.size();
+			}
+		};
+	}
+}
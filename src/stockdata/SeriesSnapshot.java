@@ -0,0 +1,214 @@
+package stockdata;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary columnar file format of a PriceSeries.
+ *
+ * A snapshot starts with a 32 byte header: magic (4), version (2), reserved (2), number of rows (4) and for
+ * each of the 7 columns an encoding and a scale byte. The columns follow in the order day, open, high, low,
+ * close, volume and adjusted close, every column starts at a multiple of 8 bytes. All values are little endian.
+ *
+ * Days and volumes are stored as raw ints and longs. A price column is stored either as raw doubles, or as
+ * fixed-point values (price * 10^scale) with a long base followed by int deltas between the days.
+ * The fixed-point encoding is only used when it gives the exact same doubles back.
+ * @author Aeilko Bos
+ */
+public class SeriesSnapshot {
+	// "SDTS"
+	private static final int MAGIC = 0x53445453;
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int COLUMNS = 7;
+
+	// Column encodings
+	private static final byte RAW = 0;
+	private static final byte FIXED = 1;
+
+	// Maximum number of decimals of the fixed-point encoding
+	private static final int MAX_SCALE = 8;
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8 };
+
+	private SeriesSnapshot(){	}
+
+
+	// Commands
+	/**
+	 * Writes the series to the given file
+	 * @param series The series, sorted on day
+	 * @param file The file
+	 * @throws IOException If the file can't be written
+	 */
+	public static void write(PriceSeries series, Path file) throws IOException{
+		int n = series.size();
+		double[][] prices = { column(series, 1), column(series, 2), column(series, 3), column(series, 4), column(series, 6) };
+		byte[] scales = new byte[prices.length];
+		long size = HEADER_SIZE + align(4L * n);
+		for(int c = 0; c < prices.length; c++){
+			scales[c] = (byte) fixedScale(prices[c]);
+			size += scales[c] >= 0 ? 8 + align(4L * n) : 8L * n;
+		}
+		size += 8L * n;
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.order(ByteOrder.LITTLE_ENDIAN);
+
+			// Header
+			out.putInt(MAGIC);
+			out.putShort(VERSION);
+			out.putShort((short) 0);
+			out.putInt(n);
+			out.put(RAW).put((byte) 0);
+			for(int c = 0; c < prices.length; c++){
+				if(c == 4){
+					out.put(RAW).put((byte) 0);
+				}
+				out.put(scales[c] >= 0 ? FIXED : RAW).put((byte) Math.max(scales[c], 0));
+			}
+			out.position(HEADER_SIZE);
+
+			// Days
+			for(int i = 0; i < n; i++){
+				out.putInt(series.getDay(i));
+			}
+			pad(out);
+			for(int c = 0; c < prices.length; c++){
+				if(c == 4){
+					// Volume
+					for(int i = 0; i < n; i++){
+						out.putLong(series.getVolume(i));
+					}
+				}
+				if(scales[c] >= 0){
+					double pow = POW10[scales[c]];
+					long last = n > 0 ? Math.round(prices[c][0] * pow) : 0;
+					out.putLong(last);
+					for(int i = 0; i < n; i++){
+						long v = Math.round(prices[c][i] * pow);
+						out.putInt((int) (v - last));
+						last = v;
+					}
+					pad(out);
+				}
+				else{
+					out.asDoubleBuffer().put(prices[c]);
+					out.position(out.position() + 8 * n);
+				}
+			}
+			out.force();
+		}
+	}
+
+	/**
+	 * Reads the series from the given file, the file is memory-mapped.
+	 * @param file The file
+	 * @return The series
+	 * @throws IOException If the file can't be read or isn't a snapshot
+	 */
+	public static PriceSeries read(Path file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			if(channel.size() < HEADER_SIZE){
+				throw new IOException("'" + file + "' is geen snapshot");
+			}
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in.order(ByteOrder.LITTLE_ENDIAN);
+			if(in.getInt() != MAGIC || in.getShort() != VERSION){
+				throw new IOException("'" + file + "' is geen snapshot");
+			}
+			in.getShort();
+			int n = in.getInt();
+			byte[] encoding = new byte[COLUMNS];
+			byte[] scale = new byte[COLUMNS];
+			for(int c = 0; c < COLUMNS; c++){
+				encoding[c] = in.get();
+				scale[c] = in.get();
+			}
+			in.position(HEADER_SIZE);
+
+			int[] days = new int[n];
+			in.asIntBuffer().get(days);
+			in.position(HEADER_SIZE + (int) align(4L * n));
+			double[][] prices = new double[COLUMNS][];
+			long[] volume = new long[n];
+			for(int c = 1; c < COLUMNS; c++){
+				if(c == 5){
+					in.asLongBuffer().get(volume);
+					in.position(in.position() + 8 * n);
+				}
+				else if(encoding[c] == FIXED){
+					prices[c] = readFixed(in, n, scale[c]);
+				}
+				else{
+					prices[c] = new double[n];
+					in.asDoubleBuffer().get(prices[c]);
+					in.position(in.position() + 8 * n);
+				}
+			}
+			return new PriceSeries(days, prices[1], prices[2], prices[3], prices[4], volume, prices[6], n);
+		}
+		catch(RuntimeException e){ throw new IOException("'" + file + "' is geen geldige snapshot", e); }
+	}
+
+	private static double[] readFixed(MappedByteBuffer in, int n, int scale){
+		double pow = POW10[scale];
+		double[] values = new double[n];
+		long v = in.getLong();
+		for(int i = 0; i < n; i++){
+			v += in.getInt();
+			values[i] = v / pow;
+		}
+		pad(in);
+		return values;
+	}
+
+	private static void pad(MappedByteBuffer b){
+		b.position((int) align(b.position()));
+	}
+
+
+	// Queries
+	private static long align(long position){
+		return (position + 7) & ~7L;
+	}
+
+	private static double[] column(PriceSeries series, int c){
+		double[] values = new double[series.size()];
+		for(int i = 0; i < values.length; i++){
+			switch(c){
+			case 1: values[i] = series.getOpen(i); break;
+			case 2: values[i] = series.getHigh(i); break;
+			case 3: values[i] = series.getLow(i); break;
+			case 4: values[i] = series.getClose(i); break;
+			default: values[i] = series.getAdjClose(i);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @param values The values of a column
+	 * @return The smallest number of decimals for which the fixed-point encoding gives the exact values back, or -1 if there is none
+	 */
+	private static int fixedScale(double[] values){
+		for(int scale = 0; scale <= MAX_SCALE; scale++){
+			double pow = POW10[scale];
+			boolean exact = true;
+			long last = values.length > 0 ? Math.round(values[0] * pow) : 0;
+			for(int i = 0; i < values.length && exact; i++){
+				long v = Math.round(values[i] * pow);
+				exact = Math.abs(values[i] * pow) < (1L << 52) && v / pow == values[i] && v - last >= Integer.MIN_VALUE && v - last <= Integer.MAX_VALUE;
+				last = v;
+			}
+			if(exact){
+				return scale;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,74 @@
+package stockdata;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loader which loads a request only once when it is requested by multiple threads at the same time.
+ * All callers which wait on the same request share the same Data instance. A request is forgotten once it is
+ * loaded, so the loaded data isn't kept alive by this loader; repeated requests are left to a cache below it.
+ * @author Aeilko Bos
+ */
+public class SharedLoader implements DataLoader {
+	// The loader which does the actual loading
+	private final DataLoader source;
+	// Requests which are being loaded
+	private final ConcurrentHashMap<String, CompletableFuture<Data>> requests;
+	
+	
+	// Constructor
+	/**
+	 * @param source The loader which does the actual loading
+	 */
+	public SharedLoader(DataLoader source){
+		this.source = source;
+		this.requests = new ConcurrentHashMap<String, CompletableFuture<Data>>();
+	}
+	
+	
+	// Commands
+	@Override
+	public Data load(String id, char mode, int from, int to) throws IOException {
+		String key = id + "|" + mode + "|" + from + "|" + to;
+		CompletableFuture<Data> request = new CompletableFuture<Data>();
+		CompletableFuture<Data> existing = this.requests.putIfAbsent(key, request);
+		if(existing == null){
+			// This thread loads the data
+			try{
+				request.complete(this.source.load(id, mode, from, to));
+			}
+			catch(Throwable e){
+				request.completeExceptionally(e);
+				throw e;
+			}
+			finally{
+				// Only loads in flight are shared, a later request loads again
+				this.requests.remove(key, request);
+			}
+			return request.join();
+		}
+		
+		try{
+			return existing.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for '" + id + "'", e);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Loading '" + id + "' failed", e.getCause());
+		}
+	}
+	
+	/**
+	 * Forgets the requests being loaded, their callers still get the data
+	 */
+	public void clear(){
+		this.requests.clear();
+	}
+}
@@ -0,0 +1,104 @@
+package stockdata;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through loader on a HistoryStore.
+ * Days which the store already covers are read from the store, the missing intervals are loaded from the source
+ * and appended to the store. Only daily data is stored, weekly, monthly and yearly bars are resampled from it.
+ * A gap is loaded together with a stored day next to it, the stored rows are rebased when the vendor adjusted the
+ * prices of that day since they were stored, see HistoryStore.rebase().
+ * @author Aeilko Bos
+ */
+public class StoreLoader implements DataLoader {
+	// Maximum number of days between a gap and the stored day it is loaded with, longer intervals aren't loaded for a gap
+	private static final int MAX_OVERLAP_DAYS = 7;
+
+	// The store
+	private final HistoryStore store;
+	// The loader used for days which aren't in the store
+	private final DataLoader source;
+	// One lock per company, so a company is only loaded once at a time
+	private final ConcurrentHashMap<String, Object> locks;
+
+
+	// Constructor
+	/**
+	 * @param store The store
+	 * @param source The loader used for days which aren't in the store
+	 */
+	public StoreLoader(HistoryStore store, DataLoader source){
+		this.store = store;
+		this.source = source;
+		this.locks = new ConcurrentHashMap<String, Object>();
+	}
+
+
+	// Commands
+	@Override
+	public Data load(String id, char mode, int from, int to) throws IOException{
+		if(mode != 'd'){
+			return new Data(this.load(id, 'd', Resampler.periodStart(from, mode), to).getSeries(), mode);
+		}
+		synchronized(this.locks.computeIfAbsent(id, k -> new Object())){
+			List<int[]> gaps = PriceCache.gaps(this.store.getRanges(id), from, to);
+			if(gaps.isEmpty()){
+				Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+				return new Data(this.store.get(id, from, to));
+			}
+			boolean miss = gaps.size() == 1 && gaps.get(0)[0] == from && gaps.get(0)[1] == to;
+			Metrics.count(miss ? Metrics.Counter.CACHE_MISSES : Metrics.Counter.CACHE_PARTIAL_HITS, 1);
+
+			// Days from today on can still change, these are returned but not stored
+			int lastFinal = (int) LocalDate.now().toEpochDay() - 1;
+			PriceSeries recent = new PriceSeries();
+			for(int[] gap: gaps){
+				if(!PriceCache.hasWeekday(gap[0], gap[1])){
+					// Exchanges are closed in weekends
+					if(gap[0] <= Math.min(gap[1], lastFinal)){
+						this.store.append(id, new PriceSeries(), gap[0], Math.min(gap[1], lastFinal));
+					}
+					continue;
+				}
+				// A stored day next to the gap, to compare the basis of the adjusted prices
+				int before = this.store.getLastDay(id, gap[0] - 1);
+				int after = this.store.getFirstDay(id, gap[1] + 1);
+				int overlap = gap[0] - (long) before <= MAX_OVERLAP_DAYS ? before : ((long) after - gap[1] <= MAX_OVERLAP_DAYS ? after : Integer.MIN_VALUE);
+				PriceSeries series;
+				if(overlap == Integer.MIN_VALUE){
+					series = this.source.load(id, mode, gap[0], gap[1]).getSeries();
+				}
+				else{
+					series = this.source.load(id, mode, Math.min(gap[0], overlap), Math.max(gap[1], overlap)).getSeries();
+					this.store.rebase(id, series, overlap);
+				}
+				if(gap[0] <= Math.min(gap[1], lastFinal)){
+					this.store.append(id, series, gap[0], Math.min(gap[1], lastFinal));
+				}
+				for(int i = series.ceilingIndex(lastFinal + 1); i < series.size(); i++){
+					recent.add(series.getDay(i), series.getOpen(i), series.getHigh(i), series.getLow(i), series.getClose(i), series.getVolume(i), series.getAdjClose(i));
+				}
+			}
+
+			PriceSeries result = this.store.get(id, from, to);
+			if(recent.size() > 0){
+				result.addAll(recent);
+				result.sort();
+				result.trim();
+			}
+			return new Data(result);
+		}
+	}
+
+
+	// Queries
+	/**
+	 * @return The store
+	 */
+	public HistoryStore getStore(){
+		return this.store;
+	}
+}
@@ -0,0 +1,107 @@
+package stockdata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Brings the companies in a HistoryStore up to date.
+ * For every company only the days after the last day the store covers are requested, all requests are sent at
+ * the same time (the provider limits the number of connections) and the new rows are appended to the store.
+ * The last stored row is requested again: when the vendor adjusted its prices for a split or dividend since it was
+ * stored, the stored rows of the company are rebased first, see HistoryStore.rebase().
+ * Recent days without a row aren't marked as covered, so they are requested again by the next update.
+ * @author Aeilko Bos
+ */
+public class StoreUpdater {
+	// Segments per company above which the store is compacted after an update
+	private static final int MAX_SEGMENTS = 8;
+	// Days after which missing rows are taken as closed days, vendors can publish the last days late
+	private static final int SETTLE_DAYS = 7;
+
+	// The store
+	private final HistoryStore store;
+	// The vendor of the new days
+	private final PriceProvider provider;
+
+
+	// Constructor
+	/**
+	 * @param store The store
+	 * @param provider The vendor of the new days
+	 */
+	public StoreUpdater(HistoryStore store, PriceProvider provider){
+		this.store = store;
+		this.provider = provider;
+	}
+
+
+	// Commands
+	/**
+	 * Appends the days after the last covered day of every company up to the given day.
+	 * Companies which can't be loaded are reported on System.err and left out of the result.
+	 * @param ids The companies
+	 * @param from The first day of companies which aren't in the store yet
+	 * @param to The last day, should be before today because the prices of today can still change
+	 * @return Per updated company the first and last day of the appended interval and the number of new rows
+	 */
+	public Map<String, int[]> update(Collection<String> ids, int from, int to){
+		List<String> order = new ArrayList<String>();
+		List<int[]> intervals = new ArrayList<int[]>();
+		List<Integer> overlaps = new ArrayList<Integer>();
+		List<CompletableFuture<PriceSeries>> futures = new ArrayList<CompletableFuture<PriceSeries>>();
+		for(String id: ids){
+			int[] ranges = this.store.getRanges(id);
+			int first = ranges.length == 0 ? from : ranges[ranges.length-1] + 1;
+			if(first > to){
+				continue;
+			}
+			// The last stored row, to compare the basis of the adjusted prices
+			int overlap = this.store.getLastDay(id);
+			int request = overlap == Integer.MIN_VALUE ? first : Math.min(first, overlap);
+			order.add(id);
+			intervals.add(new int[]{ first, to, 0 });
+			overlaps.add(overlap);
+			// Exchanges are closed in weekends, only the covered interval has to be stored
+			futures.add(PriceCache.hasWeekday(first, to) ? this.provider.fetchAsync(id, 'd', request, to) : CompletableFuture.completedFuture(new PriceSeries()));
+		}
+
+		Map<String, int[]> updated = new LinkedHashMap<String, int[]>();
+		for(int i = 0; i < order.size(); i++){
+			String id = order.get(i);
+			int[] interval = intervals.get(i);
+			try{
+				PriceSeries series = futures.get(i).join();
+				if(overlaps.get(i) != Integer.MIN_VALUE && this.store.rebase(id, series, overlaps.get(i))){
+					System.out.println("Opgeslagen koersen van " + id + " aangepast aan de nieuwe correctie voor splits en dividend");
+				}
+				// Only cover the days up to the last row, unless they are old enough to be closed days
+				int last = series.size() > 0 ? series.getDay(series.size()-1) : Integer.MIN_VALUE;
+				interval[1] = Math.min(interval[1], Math.max(last, interval[1] - SETTLE_DAYS));
+				if(interval[1] < interval[0]){
+					continue;
+				}
+				// The interval isn't covered yet, so every row in it is new, the overlapping row isn't in it
+				this.store.append(id, series, interval[0], interval[1]);
+				interval[2] = series.ceilingIndex(interval[1] + 1) - series.ceilingIndex(interval[0]);
+				updated.put(id, interval);
+			}
+			catch(CompletionException | IOException e){
+				System.err.println("Kan de stockdata van " + id + " niet lezen.");
+			}
+		}
+
+		if(this.store.getSegmentCount() > MAX_SEGMENTS * Math.max(this.store.getIds().size(), 1)){
+			try{
+				this.store.compact();
+			}
+			catch(IOException e){ System.err.println("Kan '" + this.store.getFile() + "' niet compacten"); }
+		}
+		return updated;
+	}
+}
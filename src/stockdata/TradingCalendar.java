@@ -0,0 +1,138 @@
+package stockdata;
+
+import java.util.Arrays;
+
+/**
+ * The trading days shared by one or more series.
+ * The series are joined once, after which every shared trading day is known with its row in each series,
+ * so calculations only iterate over real observations instead of calendar days.
+ * @author Aeilko Bos
+ */
+public class TradingCalendar {
+	// The shared trading days, ascending
+	private final int[] days;
+	// Per series the row of every shared trading day
+	private final int[][] rows;
+	// Number of shared trading days
+	private final int size;
+
+
+	// Constructor
+	/**
+	 * Joins the given series on the days which are in all of them
+	 * @param series The series, sorted on day
+	 * @require series.length > 0
+	 */
+	public TradingCalendar(PriceSeries... series){
+		int n = series[0].size();
+		for(PriceSeries s: series){
+			n = Math.min(n, s.size());
+		}
+		int[] d = new int[n];
+		int[][] r = new int[series.length][n];
+		int[] pos = new int[series.length];
+		int size = 0;
+
+		// Merge join: advance every series to the largest current day until all are on the same day
+		outer:
+		while(true){
+			int max = Integer.MIN_VALUE;
+			for(int s = 0; s < series.length; s++){
+				if(pos[s] >= series[s].size()){
+					break outer;
+				}
+				max = Math.max(max, series[s].getDay(pos[s]));
+			}
+			boolean shared = true;
+			for(int s = 0; s < series.length; s++){
+				while(pos[s] < series[s].size() && series[s].getDay(pos[s]) < max){
+					pos[s]++;
+				}
+				if(pos[s] >= series[s].size()){
+					break outer;
+				}
+				shared &= series[s].getDay(pos[s]) == max;
+			}
+			if(shared){
+				d[size] = max;
+				for(int s = 0; s < series.length; s++){
+					r[s][size] = pos[s]++;
+				}
+				size++;
+			}
+		}
+
+		this.days = d;
+		this.rows = r;
+		this.size = size;
+	}
+
+
+	// Queries
+	/**
+	 * @return The number of shared trading days
+	 */
+	public int size(){
+		return this.size;
+	}
+
+	/**
+	 * @param i The index of the trading day
+	 * @return The epoch day
+	 */
+	public int getDay(int i){
+		return this.days[i];
+	}
+
+	/**
+	 * @param series The index of the series, in the order they were given to the constructor
+	 * @param i The index of the trading day
+	 * @return The row of the trading day in the series
+	 */
+	public int getRow(int series, int i){
+		return this.rows[series][i];
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the given day, or -1 if it isn't a shared trading day
+	 */
+	public int indexOf(int day){
+		int i = Arrays.binarySearch(this.days, 0, this.size, day);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the last trading day on or before the given day, or -1 if there is none
+	 */
+	public int floorIndex(int day){
+		int i = Arrays.binarySearch(this.days, 0, this.size, day);
+		return i < 0 ? -i - 2 : i;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the first trading day on or after the given day, or size() if there is none
+	 */
+	public int ceilingIndex(int day){
+		int i = Arrays.binarySearch(this.days, 0, this.size, day);
+		return i < 0 ? -i - 1 : i;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the last trading day before the given day, or -1 if there is none
+	 */
+	public int previous(int day){
+		return this.ceilingIndex(day) - 1;
+	}
+
+	/**
+	 * @param day The epoch day
+	 * @return The index of the first trading day after the given day, or size() if there is none
+	 */
+	public int next(int day){
+		return this.floorIndex(day) + 1;
+	}
+}
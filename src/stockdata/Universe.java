@@ -0,0 +1,118 @@
+package stockdata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The daily series of many companies and markets, loaded once and shared by every calculation.
+ * @author Aeilko Bos
+ */
+public class Universe {
+	// The source of the stock data
+	private final DataLoader loader;
+	// The series per ticker
+	private final ConcurrentHashMap<String, PriceSeries> series;
+
+
+	// Constructor
+	/**
+	 * Creates an empty universe
+	 * @param loader The source of the stock data
+	 */
+	public Universe(DataLoader loader){
+		this.loader = loader;
+		this.series = new ConcurrentHashMap<String, PriceSeries>();
+	}
+
+
+	// Commands
+	/**
+	 * Loads the daily series of the given tickers, replacing the ones already in the universe.
+	 * Tickers which can't be loaded are reported on System.err and left out.
+	 * @param ids The tickers
+	 * @param from The first epoch day
+	 * @param to The last epoch day
+	 * @param parallelism Number of tickers which are loaded at the same time
+	 * @return The tickers which couldn't be loaded
+	 */
+	public List<String> load(Collection<String> ids, int from, int to, int parallelism){
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(parallelism, 1));
+		try{
+			List<String> failed = new ArrayList<String>();
+			List<String> order = new ArrayList<String>(ids);
+			List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(order.size());
+			for(String id: order){
+				futures.add(CompletableFuture.runAsync(() -> {
+					try{
+						this.put(id, this.loader.load(id, 'd', from, to).getSeries());
+					}
+					catch(IOException e){
+						throw new IllegalStateException(e);
+					}
+				}, executor));
+			}
+			for(int i = 0; i < futures.size(); i++){
+				try{
+					futures.get(i).join();
+				}
+				catch(RuntimeException e){
+					System.err.println("Kan de stockdata van " + order.get(i) + " niet lezen.");
+					failed.add(order.get(i));
+				}
+			}
+			return failed;
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Adds or replaces the series of a ticker
+	 * @param id The ticker
+	 * @param s The series
+	 */
+	public void put(String id, PriceSeries s){
+		s.sort();
+		this.series.put(id, s);
+	}
+
+
+	// Queries
+	/**
+	 * @param id The ticker
+	 * @return The series of the ticker, or null if it isn't in the universe
+	 */
+	public PriceSeries get(String id){
+		return this.series.get(id);
+	}
+
+	/**
+	 * @param id The ticker
+	 * @return Whether the ticker is in the universe
+	 */
+	public boolean contains(String id){
+		return this.series.containsKey(id);
+	}
+
+	/**
+	 * @return The tickers in the universe
+	 */
+	public Set<String> getIds(){
+		return this.series.keySet();
+	}
+
+	/**
+	 * @return The number of tickers in the universe
+	 */
+	public int size(){
+		return this.series.size();
+	}
+}